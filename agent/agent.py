@@ -24,6 +24,16 @@ AGENT_GROUP = AGENT_HOSTNAME.split("--")[0] if "--" in AGENT_HOSTNAME else AGENT
 
 notifier = ToastNotifier()
 
+# Sequências dos comandos executados, confirmadas ao Manager no próximo heartbeat
+acks_pendentes = []
+
+COMANDOS_CONHECIDOS = ("shutdown", "restart")
+
+# Instância do Manager dona deste agente; começa no endereço fixo e segue o "redirect"
+heartbeat_url = MANAGER_API_URL
+# Próximo heartbeat é o primeiro depois de seguir um redirect
+redirecionado = False
+
 
 def exibir_mensagem_tela(msg, titulo="Aviso do Sistema"):
     try:
@@ -112,16 +122,52 @@ def get_or_register_key():
     return key
 
 
+def confirmar_comandos(key):
+    """Confirma na hora os comandos recebidos (antes de desligar a máquina)"""
+    headers = {"Authorization": f"Bearer {key}"}
+    payload = {"status": "shutting_down", "group": AGENT_GROUP, "acks": acks_pendentes}
+    try:
+        requests.post(heartbeat_url, json=payload, headers=headers, timeout=5)
+    except Exception as e:
+        print(f"[AGENTE] Falha ao confirmar comandos: {e}")
+
+
+def desligar(key, reiniciar=False):
+    acao = "reiniciado" if reiniciar else "desligado"
+    msg = f"O computador será {acao} em {int(SHUTDOWN_DELAY / 60)} minutos."
+    exibir_mensagem_tela(msg, "Reinício Remoto" if reiniciar else "Desligamento Remoto")
+    confirmar_comandos(key)
+    flag = "/r" if reiniciar else "/s"
+    os.system(f'shutdown {flag} /t {SHUTDOWN_DELAY} /c "{"Reinício" if reiniciar else "Desligamento"} remoto iniciado pelo Manager."')
+
+
+def executar_comando(key, command):
+    """Executa um comando conhecido do lote; retorna False quando o agente deve encerrar"""
+    if command == 'shutdown':
+        print("[AGENTE] Comando 'shutdown' recebido!")
+        desligar(key)
+        return False
+    elif command == 'restart':
+        print("[AGENTE] Comando 'restart' recebido!")
+        desligar(key, reiniciar=True)
+        return False
+    return True
+
+
 def send_heartbeat(key):
+    global acks_pendentes, heartbeat_url, redirecionado
     if not key:
         print("[AGENTE] Não é possível enviar heartbeat: Chave ausente.")
         return True
 
     headers = {"Authorization": f"Bearer {key}"}
-    payload = {"hostname": AGENT_HOSTNAME, "status": "online", "group": AGENT_GROUP}
+    # Recém-redirecionado: o Manager atende aqui em vez de redirecionar de novo
+    if redirecionado:
+        headers["X-Agent-Redirected"] = "1"
+    payload = {"hostname": AGENT_HOSTNAME, "status": "online", "group": AGENT_GROUP, "acks": acks_pendentes}
 
     try:
-        response = requests.post(MANAGER_API_URL, json=payload, headers=headers, timeout=10)
+        response = requests.post(heartbeat_url, json=payload, headers=headers, timeout=10)
         if response.status_code == 401:
             print("[AGENTE] ERRO: O Manager rejeitou a chave (401). Limpando registro.")
             try:
@@ -133,24 +179,39 @@ def send_heartbeat(key):
 
         if response.status_code == 200:
             data = response.json()
-            command = data.get('command')
-            if command == 'shutdown':
-                print("[AGENTE] Comando 'shutdown' recebido!")
-                msg = f"O computador será desligado em {int(SHUTDOWN_DELAY / 60)} minutos."
-                exibir_mensagem_tela(msg, "Desligamento Remoto")
-                os.system(f'shutdown /s /t {SHUTDOWN_DELAY} /c "Desligamento remoto iniciado pelo Manager."')
-                return False
-            elif command == 'ok':
-                print(f"[AGENTE] ({AGENT_HOSTNAME}) Heartbeat OK.")
+            # Instância errada: nada foi processado, os próximos heartbeats vão para a dona
+            if data.get('redirect'):
+                heartbeat_url = f"{data['redirect']}/api/manager/heartbeat"
+                redirecionado = True
+                print(f"[AGENTE] Redirecionado para {data['redirect']}.")
                 return True
-            else:
-                print(f"[AGENTE] Resposta desconhecida: {data}")
+            redirecionado = False
+            # O Manager recebeu as confirmações enviadas; confirma só o que for executado agora
+            acks_pendentes = []
+            comandos = sorted(data.get('commands') or [], key=lambda c: c["sequence"])
+            # Manager antigo: só o campo "command"
+            if not comandos and data.get('command') not in (None, 'ok'):
+                comandos = [{"sequence": None, "command": data['command']}]
+            if not comandos:
+                print(f"[AGENTE] ({AGENT_HOSTNAME}) Heartbeat OK.")
                 return True
+            for comando in comandos:
+                if comando["command"] not in COMANDOS_CONHECIDOS:
+                    # Sem confirmação: o Manager reentrega e, esgotadas as tentativas, marca como abandonado
+                    print(f"[AGENTE] Comando desconhecido ignorado: {comando['command']}")
+                    continue
+                if comando["sequence"] is not None:
+                    acks_pendentes.append(comando["sequence"])
+                if not executar_comando(key, comando["command"]):
+                    return False
+            return True
         else:
             print(f"[AGENTE] Erro inesperado ({response.status_code}): {response.text}")
             return True
     except Exception as e:
         print(f"[AGENTE] Erro no heartbeat: {e}")
+        # A instância dona pode ter caído: volta ao endereço fixo, que redireciona de novo
+        heartbeat_url = MANAGER_API_URL
         return True
 
 
@@ -0,0 +1,25 @@
+package br.edu.satc.backend.configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfiguration {
+
+    /**
+     * Executor usado para espalhar comandos por muitos hosts. Com
+     * spring.threads.virtual.enabled cada tarefa roda numa virtual thread,
+     * como já acontece com as requisições do Tomcat e os @Scheduled.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService fanOutExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -4,35 +4,66 @@ package br.edu.satc.backend.controllers;
 import br.edu.satc.backend.dtos.AgentRegisterRequestDto;
 import br.edu.satc.backend.dtos.AgentResponseDto;
 import br.edu.satc.backend.dtos.AgenteRegisterResponseDto;
+import br.edu.satc.backend.dtos.BulkScheduleResponseDto;
+import br.edu.satc.backend.dtos.CommandAckRequestDto;
 import br.edu.satc.backend.dtos.CommandAllHostsRequestDto;
+import br.edu.satc.backend.dtos.CommandDeliveryDto;
 import br.edu.satc.backend.dtos.CommandGroupHostsRequestDto;
 import br.edu.satc.backend.dtos.CommandHostUniqueRequestDto;
+import br.edu.satc.backend.dtos.GroupHeartbeatStatsDto;
+import br.edu.satc.backend.dtos.HeartbeatBatchRequestDto;
+import br.edu.satc.backend.dtos.HeartbeatBatchResponseDto;
 import br.edu.satc.backend.dtos.HeartbeatRequestDto;
 import br.edu.satc.backend.dtos.HeartbeatResponseDto;
 import br.edu.satc.backend.dtos.MessageResponseDto;
 import br.edu.satc.backend.dtos.ScheduleCommandDto;
+import br.edu.satc.backend.dtos.ScheduledCommandPageDto;
 import br.edu.satc.backend.dtos.ScheduledCommandResponseDto;
 import br.edu.satc.backend.models.AgentEntity;
+import br.edu.satc.backend.models.ScheduledCommandEntity;
 import br.edu.satc.backend.services.AgentService;
+import br.edu.satc.backend.services.IdempotencyStore;
 import br.edu.satc.backend.services.ScheduledCommandService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/manager") 
 public class ManagerController {
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String NEXT_CURSOR = "X-Next-Cursor";
+    // Enviado pelo agente no primeiro heartbeat depois de seguir um redirect
+    private static final String REDIRECTED = "X-Agent-Redirected";
+
     private final AgentService agentService;
     private final ScheduledCommandService scheduledCommandService;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/register")
@@ -43,32 +74,79 @@ public class ManagerController {
     @PostMapping("/heartbeat")
     public ResponseEntity<HeartbeatResponseDto> handleHeartbeat(
             @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = REDIRECTED, required = false) String redirected,
             @RequestBody @Valid HeartbeatRequestDto heartbeatRequestDto) {
         
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Autorização ausente");
-        }
-        
-        String receivedKey = authHeader.substring(7); 
+        String receivedKey = extractAgentKey(authHeader);
         
-        HeartbeatResponseDto response = agentService.processHeartbeat(receivedKey, heartbeatRequestDto);
+        HeartbeatResponseDto response = agentService.processHeartbeat(receivedKey, heartbeatRequestDto, redirected != null);
         
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/heartbeat/poll")
+    public DeferredResult<HeartbeatResponseDto> handleHeartbeatLongPoll(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = REDIRECTED, required = false) String redirected,
+            @RequestParam(required = false) Long timeout,
+            @RequestBody @Valid HeartbeatRequestDto heartbeatRequestDto) {
+
+        return agentService.processHeartbeatLongPoll(extractAgentKey(authHeader), heartbeatRequestDto, timeout, redirected != null);
+    }
+
+    @PostMapping("/heartbeat/batch")
+    public HeartbeatBatchResponseDto handleHeartbeatBatch(@RequestBody @Valid HeartbeatBatchRequestDto heartbeatBatchRequestDto) {
+        return agentService.processHeartbeatBatch(heartbeatBatchRequestDto);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> openCommandStream(@RequestHeader("Authorization") String authHeader) {
+        String agentKey = extractAgentKey(authHeader);
+
+        // Canal aberto na instância errada: o agente reconecta na dona
+        String owner = agentService.redirectFor(agentKey);
+        if (owner != null) {
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(URI.create(owner + "/api/manager/stream")).build();
+        }
+        return ResponseEntity.ok(agentService.openCommandStream(agentKey));
+    }
+
+    @PostMapping("/stream/ack")
+    public ResponseEntity<Void> acknowledgeStreamCommands(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestBody @Valid CommandAckRequestDto dto) {
+        String agentKey = extractAgentKey(authHeader);
+
+        String owner = agentService.redirectFor(agentKey);
+        if (owner != null) {
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(URI.create(owner + "/api/manager/stream/ack")).build();
+        }
+        agentService.acknowledgeStreamCommands(agentKey, dto.acks());
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/admin/queue_command")
-    public MessageResponseDto queueCommand(@RequestBody @Valid CommandHostUniqueRequestDto commandHostUniqueRequestDto) {
-        return agentService.queueCommandForHost(commandHostUniqueRequestDto);
+    public MessageResponseDto queueCommand(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody @Valid CommandHostUniqueRequestDto commandHostUniqueRequestDto) {
+        return idempotencyStore.execute("queue_command", idempotencyKey, commandHostUniqueRequestDto,
+            () -> agentService.queueCommandForHost(commandHostUniqueRequestDto));
     }
 
     @PostMapping("/admin/queue_command_group")
-    public MessageResponseDto queueCommandForGroup(@RequestBody @Valid CommandGroupHostsRequestDto commandHostUniqueRequestDto) {
-        return agentService.queueCommandForGroup(commandHostUniqueRequestDto);
+    public MessageResponseDto queueCommandForGroup(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody @Valid CommandGroupHostsRequestDto commandHostUniqueRequestDto) {
+        return idempotencyStore.execute("queue_command_group", idempotencyKey, commandHostUniqueRequestDto,
+            () -> agentService.queueCommandForGroup(commandHostUniqueRequestDto));
     }
 
     @PostMapping("/admin/queue_command_all")
-    public MessageResponseDto queueCommandForAll(@RequestBody @Valid CommandAllHostsRequestDto commandHostUniqueRequestDto) {
-        return agentService.queueCommandForAll(commandHostUniqueRequestDto);
+    public MessageResponseDto queueCommandForAll(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody @Valid CommandAllHostsRequestDto commandHostUniqueRequestDto) {
+        return idempotencyStore.execute("queue_command_all", idempotencyKey, commandHostUniqueRequestDto,
+            () -> agentService.queueCommandForAll(commandHostUniqueRequestDto));
     }
 
     @GetMapping("/admin/agents")
@@ -78,17 +156,90 @@ public class ManagerController {
 
     @PostMapping("/admin/schedule_command")
     public ResponseEntity<MessageResponseDto> scheduleCommand(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @RequestBody @Valid ScheduleCommandDto dto) {
-        scheduledCommandService.scheduleCommand(dto);
-        return ResponseEntity.ok(new MessageResponseDto(
-            "Comando agendado para " + dto.scheduledFor()
-        ));
+        return ResponseEntity.ok(idempotencyStore.execute("schedule_command", idempotencyKey, dto, () -> {
+            ScheduledCommandEntity scheduled = scheduledCommandService.scheduleCommand(dto);
+            return new MessageResponseDto("Comando agendado para " + scheduled.getNextFireAt());
+        }));
     }
 
+    /**
+     * Agendamentos em lote: um array JSON, ou NDJSON (um agendamento por linha)
+     * com Content-Type application/x-ndjson. Os dois formatos são lidos em
+     * streaming e recusados ao passar do limite, antes de montar a lista toda.
+     */
+    @PostMapping(value = "/admin/schedule_command/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkScheduleResponseDto scheduleCommands(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            InputStream body) {
+        List<ScheduleCommandDto> dtos = readBulk(body, true);
+        return idempotencyStore.execute("schedule_command_bulk", idempotencyKey, dtos,
+            () -> scheduledCommandService.scheduleCommands(dtos));
+    }
+
+    @PostMapping(value = "/admin/schedule_command/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkScheduleResponseDto scheduleCommandsNdjson(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            InputStream body) {
+        List<ScheduleCommandDto> dtos = readBulk(body, false);
+        return idempotencyStore.execute("schedule_command_bulk", idempotencyKey, dtos,
+            () -> scheduledCommandService.scheduleCommands(dtos));
+    }
+
+    // No array o MappingIterator percorre os itens até o ']'; no NDJSON, as linhas
+    private List<ScheduleCommandDto> readBulk(InputStream body, boolean array) {
+        int maxEntries = scheduledCommandService.getBulkMaxEntries();
+        List<ScheduleCommandDto> dtos = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body);
+                MappingIterator<ScheduleCommandDto> items = openBulk(parser, array)) {
+            while (items.hasNextValue()) {
+                // Para de ler ao passar do limite, sem carregar o resto do corpo
+                if (dtos.size() == maxEntries) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Máximo de " + maxEntries + " agendamentos por lote.");
+                }
+                dtos.add(items.nextValue());
+            }
+        } catch (JsonProcessingException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                (array ? "JSON inválido no item " : "NDJSON inválido na linha ") + (dtos.size() + 1) + ": " + ex.getOriginalMessage());
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falha ao ler o lote: " + ex.getMessage());
+        }
+        return dtos;
+    }
+
+    private MappingIterator<ScheduleCommandDto> openBulk(JsonParser parser, boolean array) throws IOException {
+        if (array) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O lote deve ser um array JSON.");
+            }
+            parser.clearCurrentToken();
+        }
+        return objectMapper.readerFor(ScheduleCommandDto.class).readValues(parser);
+    }
+
+    /**
+     * Continua devolvendo a lista; a posição da próxima página vai no
+     * cabeçalho X-Next-Cursor (ausente na última). Sem parâmetros traz todos
+     * os agendamentos, como antes da paginação; state=pending traz só os
+     * próximos a disparar.
+     */
     @GetMapping("/admin/schedule_command")
-    public List<ScheduledCommandResponseDto> getSchedules() {
-        return scheduledCommandService.getSchedules();
-    }   
+    public ResponseEntity<List<ScheduledCommandResponseDto>> getSchedules(
+            @RequestParam(defaultValue = "all") String state,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        ScheduledCommandPageDto page = scheduledCommandService.getSchedules(state, from, to, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
 
     @DeleteMapping("/admin/agents/{id}")
     public MessageResponseDto deleteByHostId(@PathVariable Long id) {
@@ -106,8 +257,30 @@ public class ManagerController {
        return agentService.approveAgent(id);
     }
 
+    @GetMapping("/admin/groups/stats")
+    public List<GroupHeartbeatStatsDto> getGroupHeartbeatStats() {
+        return agentService.getGroupHeartbeatStats();
+    }
+
+    @GetMapping("/admin/commands")
+    public List<CommandDeliveryDto> getCommandDeliveries(@RequestParam(defaultValue = "50") int limit) {
+        return agentService.getCommandDeliveries(limit);
+    }
+
+    @GetMapping("/admin/commands/{sequence}")
+    public CommandDeliveryDto getCommandDelivery(@PathVariable long sequence) {
+        return agentService.getCommandDelivery(sequence);
+    }
+
     @GetMapping("/admin/agents/pending")
     public List<AgentResponseDto> getPendingAgents() {
         return agentService.getPendingAgents();
     }
+
+    private String extractAgentKey(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Autorização ausente");
+        }
+        return authHeader.substring(7);
+    }
 }
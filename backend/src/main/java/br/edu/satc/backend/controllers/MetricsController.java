@@ -0,0 +1,119 @@
+package br.edu.satc.backend.controllers;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import br.edu.satc.backend.dtos.AgentRegistryStatsDto;
+import br.edu.satc.backend.dtos.AgentStreamStatsDto;
+import br.edu.satc.backend.dtos.BroadcastLogStatsDto;
+import br.edu.satc.backend.dtos.ClusterStatsDto;
+import br.edu.satc.backend.dtos.CommandJournalStatsDto;
+import br.edu.satc.backend.dtos.CommandQueueStatsDto;
+import br.edu.satc.backend.dtos.HeartbeatBufferStatsDto;
+import br.edu.satc.backend.dtos.IdempotencyStatsDto;
+import br.edu.satc.backend.dtos.LongPollStatsDto;
+import br.edu.satc.backend.dtos.OfflineDetectorStatsDto;
+import br.edu.satc.backend.dtos.SchedulerStatsDto;
+import br.edu.satc.backend.dtos.SharedCommandStatsDto;
+import br.edu.satc.backend.dtos.UdpHeartbeatStatsDto;
+import br.edu.satc.backend.infra.cluster.ClusterMembership;
+import br.edu.satc.backend.infra.cluster.SharedCommandStore;
+import br.edu.satc.backend.infra.journal.CommandJournal;
+import br.edu.satc.backend.infra.udp.UdpHeartbeatListener;
+import br.edu.satc.backend.services.AgentRegistry;
+import br.edu.satc.backend.services.AgentStreams;
+import br.edu.satc.backend.services.BroadcastLog;
+import br.edu.satc.backend.services.CommandQueue;
+import br.edu.satc.backend.services.HeartbeatBuffer;
+import br.edu.satc.backend.services.HeartbeatWaiters;
+import br.edu.satc.backend.services.IdempotencyStore;
+import br.edu.satc.backend.services.OfflineDetector;
+import br.edu.satc.backend.services.ScheduledCommandService;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/manager/admin/metrics")
+public class MetricsController {
+    private final HeartbeatBuffer heartbeatBuffer;
+    private final AgentRegistry agentRegistry;
+    private final HeartbeatWaiters heartbeatWaiters;
+    private final AgentStreams agentStreams;
+    private final ObjectProvider<UdpHeartbeatListener> udpHeartbeatListener;
+    private final OfflineDetector offlineDetector;
+    private final CommandQueue commandQueue;
+    private final BroadcastLog broadcastLog;
+    private final CommandJournal commandJournal;
+    private final IdempotencyStore idempotencyStore;
+    private final SharedCommandStore sharedCommandStore;
+    private final ClusterMembership clusterMembership;
+    private final ScheduledCommandService scheduledCommandService;
+
+    @GetMapping("/heartbeat_buffer")
+    public HeartbeatBufferStatsDto heartbeatBuffer() {
+        return heartbeatBuffer.stats();
+    }
+
+    @GetMapping("/agent_registry")
+    public AgentRegistryStatsDto agentRegistry() {
+        return agentRegistry.stats();
+    }
+
+    @GetMapping("/long_poll")
+    public LongPollStatsDto longPoll() {
+        return heartbeatWaiters.stats();
+    }
+
+    @GetMapping("/streams")
+    public AgentStreamStatsDto streams() {
+        return agentStreams.stats();
+    }
+
+    @GetMapping("/udp")
+    public UdpHeartbeatStatsDto udp() {
+        UdpHeartbeatListener listener = udpHeartbeatListener.getIfAvailable();
+        return listener != null ? listener.stats() : new UdpHeartbeatStatsDto(false, 0, 0, 0, 0, 0);
+    }
+
+    @GetMapping("/offline_detector")
+    public OfflineDetectorStatsDto offlineDetector() {
+        return offlineDetector.stats();
+    }
+
+    @GetMapping("/command_queue")
+    public CommandQueueStatsDto commandQueue() {
+        return commandQueue.stats();
+    }
+
+    @GetMapping("/broadcasts")
+    public BroadcastLogStatsDto broadcasts() {
+        return broadcastLog.stats();
+    }
+
+    @GetMapping("/journal")
+    public CommandJournalStatsDto journal() {
+        return commandJournal.stats();
+    }
+
+    @GetMapping("/idempotency")
+    public IdempotencyStatsDto idempotency() {
+        return idempotencyStore.stats();
+    }
+
+    @GetMapping("/shared_commands")
+    public SharedCommandStatsDto sharedCommands() {
+        return sharedCommandStore.stats();
+    }
+
+    @GetMapping("/cluster")
+    public ClusterStatsDto cluster() {
+        return clusterMembership.stats(agentRegistry.size());
+    }
+
+    @GetMapping("/schedules")
+    public SchedulerStatsDto schedules() {
+        return scheduledCommandService.stats();
+    }
+}
@@ -0,0 +1,8 @@
+package br.edu.satc.backend.dtos;
+
+public record AgentCommandDto(
+    long sequence,
+    String command
+) {
+    
+}
@@ -0,0 +1,12 @@
+package br.edu.satc.backend.dtos;
+
+public record AgentRegistryStatsDto(
+    int agents,
+    int groups,
+    long hits,
+    long misses,
+    long estimatedBytes,
+    long estimatedBytesPer100kAgents
+) {
+    
+}
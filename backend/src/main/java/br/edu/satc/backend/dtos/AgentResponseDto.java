@@ -9,7 +9,10 @@ public record AgentResponseDto(
     String hostname,
     String key,
     String status,
-    LocalDateTime lastHeartbeat
+    LocalDateTime lastHeartbeat,
+    Long intervalP50Ms,
+    Long intervalP99Ms,
+    Long missedBeats
 ) {
 
 
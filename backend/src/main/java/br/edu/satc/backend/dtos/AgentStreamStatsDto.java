@@ -0,0 +1,10 @@
+package br.edu.satc.backend.dtos;
+
+public record AgentStreamStatsDto(
+    int connected,
+    long opened,
+    long pushed,
+    long failed
+) {
+    
+}
@@ -0,0 +1,15 @@
+package br.edu.satc.backend.dtos;
+
+public record BroadcastLogStatsDto(
+    int scopes,
+    int entries,
+    int historyPerScope,
+    long latestGeneration,
+    long published,
+    long delivered,
+    long expired,
+    int activeRollouts,
+    long wavesReleased
+) {
+    
+}
@@ -0,0 +1,11 @@
+package br.edu.satc.backend.dtos;
+
+import java.time.LocalDateTime;
+
+public record BulkScheduleResponseDto(
+    int scheduled,
+    LocalDateTime firstFireAt,
+    LocalDateTime lastFireAt
+) {
+    
+}
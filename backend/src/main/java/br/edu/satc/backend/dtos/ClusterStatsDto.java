@@ -0,0 +1,18 @@
+package br.edu.satc.backend.dtos;
+
+import java.util.List;
+
+public record ClusterStatsDto(
+    boolean enabled,
+    String nodeId,
+    String advertiseUrl,
+    List<String> nodes,
+    int virtualNodes,
+    int ownedAgents,
+    long rebalances,
+    int lastReleased,
+    int lastAcquired,
+    long redirects
+) {
+    
+}
@@ -0,0 +1,15 @@
+package br.edu.satc.backend.dtos;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public record CommandAckRequestDto(
+    // Sequências dos comandos recebidos pelo canal SSE e executados
+    @NotNull(message = "Confirmações são necessárias")
+    @Size(max = 256, message = "No máximo 256 confirmações por requisição")
+    List<Long> acks
+) {
+    
+}
@@ -0,0 +1,19 @@
+package br.edu.satc.backend.dtos;
+
+import java.time.LocalDateTime;
+
+public record CommandDeliveryDto(
+    long sequence,
+    String command,
+    String target,
+    int targets,
+    long delivered,
+    long acked,
+    long redelivered,
+    long abandoned,
+    String progress,
+    LocalDateTime createdAt,
+    LocalDateTime expiresAt
+) {
+    
+}
@@ -1,12 +1,22 @@
 package br.edu.satc.backend.dtos;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 
 public record CommandGroupHostsRequestDto(
     @NotBlank(message = "Indicar um grupo é necessário")
     String group,
     @NotBlank(message = "Um comando é necessário")
-    String command
+    String command,
+    // Validade do comando na fila; sem valor usa agent.commands.ttl-ms
+    @Positive(message = "TTL deve ser positivo")
+    @Max(value = 86400, message = "TTL máximo é de 24 horas")
+    Long ttlSeconds,
+    // Liberação em ondas; sem valor todos os hosts recebem no próximo heartbeat
+    @Valid
+    RolloutPolicyDto rollout
 ) {
     
 }
@@ -1,12 +1,18 @@
 package br.edu.satc.backend.dtos;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 
 public record CommandHostUniqueRequestDto(
     @NotBlank(message = "Hostname precisa ser indicado")
     String hostname,
     @NotBlank(message = "Um comando é necessário")
-    String command
+    String command,
+    // Validade do comando na fila; sem valor usa agent.commands.ttl-ms
+    @Positive(message = "TTL deve ser positivo")
+    @Max(value = 86400, message = "TTL máximo é de 24 horas")
+    Long ttlSeconds
 ) {
     
 }
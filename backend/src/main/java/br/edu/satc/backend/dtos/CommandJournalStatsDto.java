@@ -0,0 +1,17 @@
+package br.edu.satc.backend.dtos;
+
+public record CommandJournalStatsDto(
+    boolean enabled,
+    String path,
+    String fsync,
+    long sizeBytes,
+    long mappedBytes,
+    long appended,
+    long failures,
+    long compactions,
+    long lastCompactionMs,
+    long lastRecoveryRecords,
+    long lastRecoveryMs
+) {
+    
+}
@@ -0,0 +1,14 @@
+package br.edu.satc.backend.dtos;
+
+public record CommandQueueStatsDto(
+    int hostsWithPending,
+    long pending,
+    int maxPerHost,
+    long defaultTtlMs,
+    long enqueued,
+    long drained,
+    long dropped,
+    long expired
+) {
+    
+}
@@ -0,0 +1,12 @@
+package br.edu.satc.backend.dtos;
+
+public record GroupHeartbeatStatsDto(
+    String group,
+    int agents,
+    int online,
+    Long intervalP50Ms,
+    Long intervalP99Ms,
+    long missedBeats
+) {
+    
+}
@@ -0,0 +1,15 @@
+package br.edu.satc.backend.dtos;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+public record HeartbeatBatchItemDto(
+    @NotBlank(message = "Cada heartbeat precisa da chave do agente")
+    String agentKey,
+    @NotNull(message = "Heartbeat é necessário")
+    @Valid
+    HeartbeatRequestDto heartbeat
+) {
+    
+}
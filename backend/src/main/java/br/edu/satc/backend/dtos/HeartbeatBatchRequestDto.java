@@ -0,0 +1,15 @@
+package br.edu.satc.backend.dtos;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+public record HeartbeatBatchRequestDto(
+    @NotEmpty(message = "O lote precisa ter ao menos um heartbeat")
+    @Size(max = 10000, message = "O lote aceita no máximo 10000 heartbeats")
+    List<@Valid HeartbeatBatchItemDto> heartbeats
+) {
+    
+}
@@ -0,0 +1,11 @@
+package br.edu.satc.backend.dtos;
+
+import java.util.List;
+import java.util.Map;
+
+public record HeartbeatBatchResponseDto(
+    Map<String, HeartbeatResponseDto> responses,
+    List<String> rejected
+) {
+    
+}
@@ -0,0 +1,26 @@
+package br.edu.satc.backend.dtos;
+
+public record HeartbeatBufferStatsDto(
+    int pending,
+    int maxPending,
+    long flushIntervalMs,
+    // Heartbeats que passaram pelo buffer, gravados ou não
+    long received,
+    // Gravações enfileiradas: heartbeats não suprimidos, cursores e regravações de estado
+    long recorded,
+    long suppressed,
+    double suppressionRatio,
+    long coalesced,
+    long flushes,
+    long failedFlushes,
+    // Gravações que encontraram o buffer cheio e esperaram um flush
+    long backpressureWaits,
+    long flushedRows,
+    long lastFlushRows,
+    long lastFlushDurationMs,
+    long lastFlushRowsPerSecond,
+    long lastFlushLagMs,
+    long maxFlushLagMs
+) {
+    
+}
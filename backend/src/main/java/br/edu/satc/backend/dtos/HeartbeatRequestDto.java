@@ -1,12 +1,18 @@
 package br.edu.satc.backend.dtos;
 
+import java.util.List;
+
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
 public record HeartbeatRequestDto(
     @NotBlank(message = "Status é necessário")
     String status,
     @NotBlank(message = "Grupo é ncessário")
-    String group
+    String group,
+    // Sequências dos comandos recebidos na resposta anterior; ausente em agentes antigos
+    @Size(max = 256, message = "No máximo 256 confirmações por heartbeat")
+    List<Long> acks
 ) {
     
 }
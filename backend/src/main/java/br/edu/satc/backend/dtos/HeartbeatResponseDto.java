@@ -1,7 +1,12 @@
 package br.edu.satc.backend.dtos;
 
+import java.util.List;
+
 public record HeartbeatResponseDto(
-    String command
+    String command,
+    List<AgentCommandDto> commands,
+    // Endereço da instância dona do agente, quando o heartbeat chegou na errada
+    String redirect
 ) {
     
 }
@@ -0,0 +1,13 @@
+package br.edu.satc.backend.dtos;
+
+public record IdempotencyStatsDto(
+    int keys,
+    int maxKeys,
+    long ttlMs,
+    long executed,
+    long replayed,
+    long conflicts,
+    long evicted
+) {
+    
+}
@@ -0,0 +1,10 @@
+package br.edu.satc.backend.dtos;
+
+public record LongPollStatsDto(
+    int waiting,
+    long parked,
+    long woken,
+    long timedOut
+) {
+    
+}
@@ -0,0 +1,12 @@
+package br.edu.satc.backend.dtos;
+
+public record OfflineDetectorStatsDto(
+    int tracked,
+    int wheelSize,
+    long tickMs,
+    long timeoutMs,
+    long expired,
+    long lastTickDurationMs
+) {
+    
+}
@@ -0,0 +1,19 @@
+package br.edu.satc.backend.dtos;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Repetição de um agendamento: uma expressão cron, ou dias da semana e
+ * horário. O horário é interpretado no fuso informado (padrão: o do servidor).
+ */
+public record RecurrenceDto(
+    // "seg min hora dia mês dia-da-semana" ou, sem os segundos, cron de 5 campos
+    String cron,
+    List<DayOfWeek> daysOfWeek,
+    LocalTime time,
+    String zone
+) {
+    
+}
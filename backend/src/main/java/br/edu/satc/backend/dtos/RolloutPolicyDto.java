@@ -0,0 +1,21 @@
+package br.edu.satc.backend.dtos;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public record RolloutPolicyDto(
+    @NotNull(message = "Percentual por onda é necessário")
+    @Min(value = 1, message = "Percentual por onda deve ser de 1 a 100")
+    @Max(value = 100, message = "Percentual por onda deve ser de 1 a 100")
+    Integer wavePercent,
+    @NotNull(message = "Intervalo entre ondas é necessário")
+    @Positive(message = "Intervalo entre ondas deve ser positivo")
+    Integer waveIntervalSeconds,
+    // Sem valor, as ondas saem só pelo intervalo
+    @Positive(message = "Limite em andamento deve ser positivo")
+    Integer maxInFlight
+) {
+    
+}
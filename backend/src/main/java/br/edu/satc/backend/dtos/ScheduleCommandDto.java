@@ -1,16 +1,33 @@
 package br.edu.satc.backend.dtos;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Future;
-import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 
 import java.time.LocalDateTime;
 
+import br.edu.satc.backend.models.MisfirePolicy;
+
 public record ScheduleCommandDto(
-    @NotNull(message = "Data e hora do comando são obrigatórios")
+    // Com repetição é opcional: as ocorrências começam a partir dela
     @Future(message = "A data deve estar no futuro")
     LocalDateTime scheduledFor,
 
+    @Valid
     CommandAllHostsRequestDto allHostsCommand,
+    @Valid
     CommandGroupHostsRequestDto groupCommand,
-    CommandHostUniqueRequestDto hostCommand
+    @Valid
+    CommandHostUniqueRequestDto hostCommand,
+
+    // Vale para os alvos "all" e "group"; também aceito dentro do comando, mas não nos dois
+    @Valid
+    RolloutPolicyDto rollout,
+
+    RecurrenceDto recurrence,
+
+    // Sem valor segue agent.schedules.misfire-policy
+    MisfirePolicy misfirePolicy,
+    @Positive(message = "Janela de atraso deve ser positiva")
+    Integer misfireWithinSeconds
 ) {}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package br.edu.satc.backend.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record ScheduleFireDto(
+    UUID scheduleId,
+    String command,
+    LocalDateTime intendedAt,
+    LocalDateTime firedAt,
+    long lagMs,
+    // "fired", "late", "skipped" ou "failed"
+    String outcome
+) {
+    
+}
@@ -0,0 +1,11 @@
+package br.edu.satc.backend.dtos;
+
+import java.util.List;
+
+public record ScheduledCommandPageDto(
+    List<ScheduledCommandResponseDto> items,
+    // Nulo na última página
+    String nextCursor
+) {
+    
+}
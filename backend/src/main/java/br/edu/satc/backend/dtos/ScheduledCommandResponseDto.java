@@ -3,14 +3,25 @@ package br.edu.satc.backend.dtos;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import br.edu.satc.backend.models.MisfirePolicy;
+
 public record ScheduledCommandResponseDto(
     UUID id,
     String command,
     String targetType,
     String targetValue,
     LocalDateTime scheduledFor,
+    LocalDateTime nextFireAt,
     boolean executed,
-    LocalDateTime createdAt
+    String recurrenceCron,
+    String recurrenceZone,
+    LocalDateTime createdAt,
+    Integer rolloutWavePercent,
+    Integer rolloutWaveIntervalSeconds,
+    Integer rolloutMaxInFlight,
+    MisfirePolicy misfirePolicy,
+    Integer misfireWithinSeconds,
+    Long ttlSeconds
 ) {
     
 }
@@ -0,0 +1,22 @@
+package br.edu.satc.backend.dtos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record SchedulerStatsDto(
+    int queued,
+    LocalDateTime nextFireAt,
+    long misfireThresholdMs,
+    String defaultMisfirePolicy,
+    long fired,
+    long missed,
+    long firedLate,
+    long skipped,
+    long failed,
+    Long lagP50Ms,
+    Long lagP99Ms,
+    long maxLagMs,
+    List<ScheduleFireDto> recentFires
+) {
+    
+}
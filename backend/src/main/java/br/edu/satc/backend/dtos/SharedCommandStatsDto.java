@@ -0,0 +1,18 @@
+package br.edu.satc.backend.dtos;
+
+public record SharedCommandStatsDto(
+    boolean enabled,
+    String lockClause,
+    int hostsWithPending,
+    long lastBroadcastId,
+    long inserted,
+    long claimed,
+    long emptyClaims,
+    long dropped,
+    long expired,
+    long failures,
+    long polls,
+    long lastPollMs
+) {
+    
+}
@@ -0,0 +1,12 @@
+package br.edu.satc.backend.dtos;
+
+public record UdpHeartbeatStatsDto(
+    boolean enabled,
+    int port,
+    long received,
+    long accepted,
+    long rejected,
+    long malformed
+) {
+    
+}
@@ -0,0 +1,200 @@
+package br.edu.satc.backend.infra.cluster;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.ClusterStatsDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Distribuição dos agentes entre as instâncias do backend (agent.cluster.enabled).
+ *
+ * Cada instância se anuncia na tabela cluster_nodes a cada heartbeat-ms; as
+ * anunciadas há menos de node-timeout-ms formam um {@link ConsistentHashRing}
+ * sobre o hash da agentKey. Cada instância só mantém em memória, vigia e
+ * atende os agentes dos quais é dona; os demais recebem no heartbeat o
+ * endereço do dono.
+ *
+ * O last_seen usa o relógio do banco, não o de cada instância: com relógios
+ * defasados as instâncias ainda enxergam o mesmo conjunto de vivas.
+ *
+ * Desligada, a instância é dona de todos os agentes.
+ */
+@Component
+@RequiredArgsConstructor
+// A tabela cluster_nodes é criada pelo Hibernate antes do primeiro anúncio
+@DependsOn("entityManagerFactory")
+public class ClusterMembership {
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LongAdder redirects = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+
+    private volatile ConsistentHashRing ring;
+    private volatile int lastReleased;
+    private volatile int lastAcquired;
+
+    @Value("${agent.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${agent.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${agent.cluster.advertise-url:http://localhost:23456}")
+    private String advertiseUrl;
+
+    @Value("${agent.cluster.virtual-nodes:160}")
+    private int virtualNodes;
+
+    @Value("${agent.cluster.node-timeout-ms:15000}")
+    private long nodeTimeoutMs;
+
+    @Value("${agent.commands.shared.enabled:false}")
+    private boolean sharedCommands;
+
+    @PostConstruct
+    public void join() {
+        if (!enabled) {
+            return;
+        }
+        // Comandos enfileirados numa instância precisam chegar ao dono do agente
+        if (!sharedCommands) {
+            throw new IllegalStateException("agent.cluster.enabled requer agent.commands.shared.enabled");
+        }
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        refresh();
+        System.out.println("[CLUSTER] Instância " + nodeId + " (" + advertiseUrl + ") no anel com "
+            + (ring != null ? ring.members().size() : 0) + " instâncias.");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean owns(long keyHash) {
+        ConsistentHashRing current = ring;
+        if (current == null) {
+            return true;
+        }
+        ConsistentHashRing.Member owner = current.ownerOf(keyHash);
+        return owner == null || owner.id().equals(nodeId);
+    }
+
+    /**
+     * @return endereço base do dono do agente, ou null se for esta instância
+     */
+    public String redirectFor(long keyHash) {
+        ConsistentHashRing current = ring;
+        if (current == null) {
+            return null;
+        }
+        ConsistentHashRing.Member owner = current.ownerOf(keyHash);
+        if (owner == null || owner.id().equals(nodeId)) {
+            return null;
+        }
+        redirects.increment();
+        return owner.url();
+    }
+
+    /**
+     * Renova o anúncio desta instância e relê as instâncias vivas.
+     *
+     * @return true se o anel mudou e os agentes devem ser redistribuídos
+     */
+    public boolean refresh() {
+        if (!enabled) {
+            return false;
+        }
+
+        List<ConsistentHashRing.Member> members;
+        try {
+            long now = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class).getTime();
+            announce(now);
+            members = jdbcTemplate.query(
+                "SELECT id, url FROM cluster_nodes WHERE last_seen > ?",
+                (rs, i) -> new ConsistentHashRing.Member(rs.getString("id"), rs.getString("url")),
+                now - nodeTimeoutMs);
+        } catch (DataAccessException ex) {
+            // Sem banco mantém o anel atual em vez de assumir todos os agentes
+            System.out.println("[CLUSTER] Falha ao atualizar instâncias: " + ex.getMessage());
+            return false;
+        }
+        members.sort(Comparator.comparing(ConsistentHashRing.Member::id));
+
+        ConsistentHashRing current = ring;
+        if (current != null && current.members().equals(members)) {
+            return false;
+        }
+        ring = new ConsistentHashRing(members, virtualNodes);
+        if (current != null) {
+            rebalances.increment();
+            System.out.println("[CLUSTER] Anel alterado: " + members.size() + " instâncias.");
+        }
+        return true;
+    }
+
+    /**
+     * Saída limpa: as demais instâncias assumem os agentes no próximo refresh,
+     * sem esperar o node-timeout-ms.
+     */
+    @PreDestroy
+    public void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM cluster_nodes WHERE id = ?", nodeId);
+        } catch (DataAccessException ex) {
+            System.out.println("[CLUSTER] Falha ao sair do anel: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Registra quantos agentes esta instância deixou e assumiu na última
+     * mudança do anel.
+     */
+    public void rebalanced(int released, int acquired) {
+        lastReleased = released;
+        lastAcquired = acquired;
+    }
+
+    public ClusterStatsDto stats(int ownedAgents) {
+        ConsistentHashRing current = ring;
+        return new ClusterStatsDto(
+            enabled,
+            nodeId,
+            advertiseUrl,
+            current != null ? current.members().stream().map(ConsistentHashRing.Member::id).toList() : List.of(),
+            virtualNodes,
+            ownedAgents,
+            rebalances.sum(),
+            lastReleased,
+            lastAcquired,
+            redirects.sum());
+    }
+
+    private void announce(long now) {
+        if (jdbcTemplate.update("UPDATE cluster_nodes SET url = ?, last_seen = ? WHERE id = ?", advertiseUrl, now, nodeId) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO cluster_nodes (id, url, last_seen) VALUES (?, ?, ?)", nodeId, advertiseUrl, now);
+        } catch (DuplicateKeyException ex) {
+            jdbcTemplate.update("UPDATE cluster_nodes SET url = ?, last_seen = ? WHERE id = ?", advertiseUrl, now, nodeId);
+        }
+    }
+}
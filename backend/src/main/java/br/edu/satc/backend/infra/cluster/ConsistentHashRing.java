@@ -0,0 +1,63 @@
+package br.edu.satc.backend.infra.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+import br.edu.satc.backend.services.AgentState;
+
+/**
+ * Anel de hash consistente com nós virtuais. Cada instância ocupa
+ * virtualNodes pontos do anel e é dona dos hashes até o seu ponto; quando uma
+ * instância entra ou sai, só os agentes dos pontos dela mudam de dono
+ * (cerca de 1/N do total).
+ *
+ * Imutável: uma mudança de membros monta um anel novo.
+ */
+final class ConsistentHashRing {
+    private final List<Member> members;
+    private final long[] points;
+    private final int[] owners;
+
+    ConsistentHashRing(List<Member> members, int virtualNodes) {
+        this.members = List.copyOf(members);
+
+        int size = this.members.size() * virtualNodes;
+        long[][] entries = new long[size][];
+        int next = 0;
+        for (int member = 0; member < this.members.size(); member++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                // Mesmo hash da chave do agente, para os dois lados caírem no mesmo espaço
+                entries[next++] = new long[] { AgentState.hashKey(this.members.get(member).id() + "#" + replica), member };
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        points = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * @return o dono do hash, ou null com o anel vazio
+     */
+    Member ownerOf(long keyHash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, keyHash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Depois do último ponto o anel volta para o primeiro
+        return members.get(owners[index == points.length ? 0 : index]);
+    }
+
+    List<Member> members() {
+        return members;
+    }
+
+    record Member(String id, String url) {}
+}
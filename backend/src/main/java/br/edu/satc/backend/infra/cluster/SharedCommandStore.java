@@ -0,0 +1,377 @@
+package br.edu.satc.backend.infra.cluster;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+import br.edu.satc.backend.dtos.SharedCommandStatsDto;
+import br.edu.satc.backend.services.BroadcastLog;
+import br.edu.satc.backend.services.QueuedCommand;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Fila de comandos na tabela shared_commands, para rodar mais de uma instância
+ * do backend sobre o mesmo banco (agent.commands.shared.enabled).
+ *
+ * Comandos de host são linhas que a instância que recebe o heartbeat do agente
+ * reivindica e apaga numa transação com SELECT ... FOR UPDATE SKIP LOCKED
+ * (PostgreSQL e H2; em outros bancos, FOR UPDATE simples, que espera a outra
+ * transação em vez de pular). Cada linha é entregue por uma única instância.
+ *
+ * Para o heartbeat continuar sem SQL, cada instância lê periodicamente quais
+ * hosts têm linhas pendentes e só consulta o banco no heartbeat desses hosts.
+ * Broadcasts não são reivindicados: toda instância copia as linhas novas para
+ * o seu {@link BroadcastLog}, na ordem do id. A inserção de broadcasts é
+ * serializada por uma linha de cluster_locks, então a ordem dos ids é a ordem
+ * de commit e nenhuma instância pula um broadcast confirmado depois de outro
+ * mais novo.
+ *
+ * O id da linha é a sequência do comando em todas as instâncias.
+ */
+@Component
+@RequiredArgsConstructor
+// A linha de cluster_locks é criada no init, depois que o Hibernate cria a tabela
+@DependsOn("entityManagerFactory")
+public class SharedCommandStore {
+    private static final String BROADCAST_LOCK = "shared_broadcasts";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO shared_commands (hostname, agent_group, broadcast, command, expires_at, "
+        + "rollout_wave_percent, rollout_wave_interval_seconds, rollout_max_in_flight, created_at) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String CLAIM_SQL =
+        "SELECT id, command, expires_at FROM shared_commands WHERE hostname = ? AND broadcast = FALSE ORDER BY id";
+
+    private static final String PENDING_HOSTS_SQL =
+        "SELECT DISTINCT hostname FROM shared_commands WHERE broadcast = FALSE AND expires_at > ?";
+
+    private static final String BROADCASTS_SQL =
+        "SELECT id, agent_group, command, expires_at, rollout_wave_percent, rollout_wave_interval_seconds, "
+        + "rollout_max_in_flight FROM shared_commands WHERE broadcast = TRUE AND id > ? AND expires_at > ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BroadcastLog broadcastLog;
+
+    // Hosts com linha pendente -> carimbo da última marcação; o carimbo evita
+    // que um claim ou uma leitura antiga desmarque um comando recém-inserido
+    private final Map<String, Long> pendingHosts = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+    // Serializa a cópia dos broadcasts para o BroadcastLog, em ordem de id
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final List<Adopted> adopted = new ArrayList<>();
+
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder emptyClaims = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+
+    private volatile long lastBroadcastId;
+    private volatile long lastPollMs;
+    private String lockClause = " FOR UPDATE";
+
+    @Value("${agent.commands.shared.enabled:false}")
+    private boolean enabled;
+
+    @Value("${agent.commands.max-per-host:32}")
+    private int maxPerHost;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        if ("PostgreSQL".equalsIgnoreCase(database) || "H2".equalsIgnoreCase(database)) {
+            lockClause = " FOR UPDATE SKIP LOCKED";
+        }
+        createBroadcastLock();
+        System.out.println("[SHARED] Fila de comandos compartilhada ativa (" + database + lockClause + ").");
+    }
+
+    /**
+     * A linha do lock é criada aqui, fora de transação: dentro da transação do
+     * broadcast uma chave duplicada aborta a transação inteira no PostgreSQL.
+     */
+    private void createBroadcastLock() {
+        try {
+            jdbcTemplate.update("INSERT INTO cluster_locks (name) SELECT ? WHERE NOT EXISTS "
+                + "(SELECT 1 FROM cluster_locks WHERE name = ?)", BROADCAST_LOCK, BROADCAST_LOCK);
+        } catch (DuplicateKeyException ex) {
+            // Outra instância subindo criou a linha ao mesmo tempo
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public QueuedCommand offer(String hostname, String command, long expiresAt) {
+        long id = insert(hostname, null, false, command, expiresAt, null);
+        inserted.increment();
+        pendingHosts.put(hostname, stamps.incrementAndGet());
+        return new QueuedCommand(id, command, expiresAt);
+    }
+
+    /**
+     * Grava o broadcast e já o copia para o {@link BroadcastLog} local; as
+     * demais instâncias o copiam no próximo {@link #poll()}.
+     *
+     * @param group grupo alvo, ou null para todos os hosts
+     */
+    public QueuedCommand publish(String group, String command, long expiresAt, RolloutPolicyDto rollout) {
+        long id = transactionTemplate.execute(status -> {
+            lockBroadcasts();
+            return insert(null, group, true, command, expiresAt, rollout);
+        });
+        inserted.increment();
+        syncBroadcasts(id);
+        return new QueuedCommand(id, command, expiresAt);
+    }
+
+    public boolean hasPending(String hostname) {
+        return pendingHosts.containsKey(hostname);
+    }
+
+    /**
+     * Reivindica e apaga as linhas do host. Hosts sem marcação de pendente
+     * retornam sem ir ao banco.
+     */
+    public List<QueuedCommand> claim(String hostname) {
+        Long stamp = pendingHosts.get(hostname);
+        if (stamp == null) {
+            return List.of();
+        }
+
+        long now = System.currentTimeMillis();
+        List<QueuedCommand> rows;
+        try {
+            rows = transactionTemplate.execute(status -> {
+                List<QueuedCommand> locked = jdbcTemplate.query(CLAIM_SQL + lockClause,
+                    (rs, i) -> new QueuedCommand(rs.getLong("id"), rs.getString("command"), rs.getLong("expires_at")),
+                    hostname);
+                return delete(locked);
+            });
+        } catch (DataAccessException ex) {
+            // Timeout de lock sem SKIP LOCKED ou falha do banco: fica para o próximo heartbeat
+            failures.increment();
+            return List.of();
+        }
+        pendingHosts.remove(hostname, stamp);
+
+        if (rows.isEmpty()) {
+            emptyClaims.increment();
+            return rows;
+        }
+
+        List<QueuedCommand> commands = new ArrayList<>(rows.size());
+        for (QueuedCommand command : rows) {
+            if (command.isExpired(now)) {
+                expired.increment();
+            } else {
+                commands.add(command);
+            }
+        }
+        // Mesmo limite da fila local: ficam os mais novos
+        if (commands.size() > maxPerHost) {
+            dropped.add(commands.size() - maxPerHost);
+            commands = new ArrayList<>(commands.subList(commands.size() - maxPerHost, commands.size()));
+        }
+        claimed.add(commands.size());
+        return commands;
+    }
+
+    /**
+     * Atualiza a lista de hosts com comandos pendentes e copia os broadcasts
+     * novos de outras instâncias.
+     *
+     * @return hosts que passaram a ter comando e broadcasts copiados, para o
+     *         chamador acordar os agentes conectados nesta instância
+     */
+    public Poll poll() {
+        if (!enabled) {
+            return Poll.EMPTY;
+        }
+
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long before = stamps.get();
+        Set<String> hosts;
+        try {
+            hosts = new HashSet<>(jdbcTemplate.queryForList(PENDING_HOSTS_SQL, String.class, now));
+            syncBroadcasts(0);
+        } catch (DataAccessException ex) {
+            failures.increment();
+            System.out.println("[SHARED] Falha ao consultar comandos compartilhados: " + ex.getMessage());
+            return Poll.EMPTY;
+        }
+
+        // Só desmarca o que não foi remarcado durante a consulta
+        pendingHosts.entrySet().removeIf(entry -> !hosts.contains(entry.getKey()) && entry.getValue() <= before);
+        List<String> woken = new ArrayList<>();
+        for (String hostname : hosts) {
+            if (pendingHosts.putIfAbsent(hostname, stamps.incrementAndGet()) == null) {
+                woken.add(hostname);
+            }
+        }
+
+        List<Adopted> broadcasts;
+        syncLock.lock();
+        try {
+            broadcasts = List.copyOf(adopted);
+            adopted.clear();
+        } finally {
+            syncLock.unlock();
+        }
+
+        polls.increment();
+        lastPollMs = (System.nanoTime() - start) / 1_000_000;
+        return new Poll(woken, broadcasts);
+    }
+
+    @Scheduled(fixedDelayString = "${agent.commands.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            expired.add(jdbcTemplate.update("DELETE FROM shared_commands WHERE expires_at <= ?", System.currentTimeMillis()));
+        } catch (DataAccessException ex) {
+            failures.increment();
+        }
+    }
+
+    public SharedCommandStatsDto stats() {
+        return new SharedCommandStatsDto(
+            enabled,
+            lockClause.trim(),
+            pendingHosts.size(),
+            lastBroadcastId,
+            inserted.sum(),
+            claimed.sum(),
+            emptyClaims.sum(),
+            dropped.sum(),
+            expired.sum(),
+            failures.sum(),
+            polls.sum(),
+            lastPollMs);
+    }
+
+    /**
+     * Lê em ordem de id os broadcasts ainda não copiados e os entrega ao
+     * {@link BroadcastLog}. Os que não foram publicados por esta chamada
+     * ficam para o próximo {@link #poll()} avisar os agentes.
+     *
+     * @param own id publicado por quem chamou, que já avisa os próprios agentes
+     */
+    private void syncBroadcasts(long own) {
+        syncLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            List<Adopted> rows = jdbcTemplate.query(BROADCASTS_SQL, (rs, i) -> toAdopted(rs), lastBroadcastId, now);
+            for (Adopted row : rows) {
+                broadcastLog.adopt(row.group(), row.command(), row.rollout());
+                lastBroadcastId = row.command().sequence();
+                if (row.command().sequence() != own) {
+                    adopted.add(row);
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void lockBroadcasts() {
+        String sql = "SELECT name FROM cluster_locks WHERE name = ? FOR UPDATE";
+        if (jdbcTemplate.queryForList(sql, String.class, BROADCAST_LOCK).isEmpty()) {
+            throw new IllegalStateException("Linha " + BROADCAST_LOCK + " ausente em cluster_locks");
+        }
+    }
+
+    private long insert(String hostname, String group, boolean broadcast, String command, long expiresAt, RolloutPolicyDto rollout) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[] { "id" });
+            ps.setString(1, hostname);
+            ps.setString(2, group);
+            ps.setBoolean(3, broadcast);
+            ps.setString(4, command);
+            ps.setLong(5, expiresAt);
+            ps.setObject(6, rollout != null ? rollout.wavePercent() : null, Types.INTEGER);
+            ps.setObject(7, rollout != null ? rollout.waveIntervalSeconds() : null, Types.INTEGER);
+            ps.setObject(8, rollout != null ? rollout.maxInFlight() : null, Types.INTEGER);
+            ps.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    /**
+     * Apaga as linhas travadas; só fica com as que esta transação de fato
+     * removeu (sem SKIP LOCKED, outra instância pode ter chegado antes).
+     */
+    private List<QueuedCommand> delete(List<QueuedCommand> locked) {
+        if (locked.isEmpty()) {
+            return locked;
+        }
+        int[] counts = jdbcTemplate.batchUpdate("DELETE FROM shared_commands WHERE id = ?", locked, locked.size(),
+            (ps, command) -> ps.setLong(1, command.sequence()))[0];
+        List<QueuedCommand> removed = new ArrayList<>(locked.size());
+        for (int i = 0; i < locked.size(); i++) {
+            if (counts[i] != 0) {
+                removed.add(locked.get(i));
+            }
+        }
+        return removed;
+    }
+
+    private static Adopted toAdopted(ResultSet rs) throws SQLException {
+        QueuedCommand command = new QueuedCommand(rs.getLong("id"), rs.getString("command"), rs.getLong("expires_at"));
+        int wavePercent = rs.getInt("rollout_wave_percent");
+        RolloutPolicyDto rollout = rs.wasNull() ? null : new RolloutPolicyDto(
+            wavePercent,
+            rs.getInt("rollout_wave_interval_seconds"),
+            rs.getObject("rollout_max_in_flight", Integer.class));
+        return new Adopted(rs.getString("agent_group"), command, rollout);
+    }
+
+    /**
+     * @param group grupo do broadcast, ou null para todos os hosts
+     */
+    public record Adopted(String group, QueuedCommand command, RolloutPolicyDto rollout) {}
+
+    public record Poll(List<String> hosts, List<Adopted> broadcasts) {
+        static final Poll EMPTY = new Poll(List.of(), List.of());
+    }
+}
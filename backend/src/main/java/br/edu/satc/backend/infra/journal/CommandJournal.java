@@ -0,0 +1,511 @@
+package br.edu.satc.backend.infra.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.CommandJournalStatsDto;
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+import br.edu.satc.backend.services.QueuedCommand;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Journal append-only dos comandos pendentes, num arquivo mapeado em memória.
+ *
+ * Cada enfileiramento, broadcast e drenagem vira um registro
+ * [tamanho][tipo][dados][crc32] escrito direto no mapeamento, sem transação
+ * de banco nem syscall por comando. Na subida o arquivo é relido para
+ * reconstruir as filas; um registro cortado por queda (crc inválido) encerra
+ * a leitura. A compactação reescreve só o que ainda está pendente e válido.
+ *
+ * agent.commands.journal.fsync:
+ *   always   força o mapeamento para o disco a cada registro
+ *   interval força a cada fsync-interval-ms (perde no máximo esse intervalo numa queda da máquina)
+ *   never    deixa para o sistema operacional (sobrevive a queda do processo, não da máquina)
+ */
+@Component
+public class CommandJournal {
+    private static final int MAGIC = 0x53484A31;
+    // Magic + maior sequência já emitida, preservada pela compactação
+    private static final int HEADER_BYTES = 4 + 8;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+
+    private static final byte OFFER = 1;
+    private static final byte BROADCAST = 2;
+    private static final byte DRAIN = 3;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private volatile boolean dirty;
+    private volatile long bytesSinceCompaction;
+    private volatile long lastCompactionMs;
+    private volatile long lastRecoveryRecords;
+    private volatile long lastRecoveryMs;
+
+    @Value("${agent.commands.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${agent.commands.journal.path:data/commands.journal}")
+    private Path path;
+
+    @Value("${agent.commands.journal.initial-size-bytes:67108864}")
+    private int initialSizeBytes;
+
+    @Value("${agent.commands.journal.fsync:interval}")
+    private String fsync;
+
+    @Value("${agent.commands.journal.compaction-min-bytes:1048576}")
+    private long compactionMinBytes;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lê o journal, reescreve já compactado e deixa o arquivo pronto para
+     * novos registros. Chamado uma vez na subida, antes de aceitar comandos.
+     */
+    public Recovered recover() {
+        if (!enabled) {
+            return Recovered.EMPTY;
+        }
+
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            State state = new State();
+            if (Files.exists(path)) {
+                try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ)) {
+                    state.replay(existing.map(FileChannel.MapMode.READ_ONLY, 0, existing.size()));
+                }
+            }
+            rewrite(state);
+
+            lastRecoveryRecords = state.records;
+            lastRecoveryMs = (System.nanoTime() - start) / 1_000_000;
+            Recovered recovered = state.toRecovered(System.currentTimeMillis());
+            System.out.println("[JOURNAL] " + state.records + " registros lidos em " + lastRecoveryMs + " ms: "
+                + recovered.pendingCommands() + " comandos pendentes recuperados.");
+            return recovered;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao recuperar o journal de comandos em " + path, ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void offer(String hostname, QueuedCommand command) {
+        if (!enabled) {
+            return;
+        }
+        byte[] host = utf8(hostname);
+        byte[] text = utf8(command.command());
+        append(OFFER, 8 + 8 + 2 + host.length + 2 + text.length, record -> {
+            record.putLong(command.sequence());
+            record.putLong(command.expiresAt());
+            putString(record, host);
+            putString(record, text);
+        });
+    }
+
+    public void broadcast(String group, QueuedCommand command, RolloutPolicyDto rollout) {
+        if (!enabled) {
+            return;
+        }
+        byte[] scope = utf8(group != null ? group : "");
+        byte[] text = utf8(command.command());
+        append(BROADCAST, 8 + 8 + 2 + scope.length + 2 + text.length + 12, record -> {
+            record.putLong(command.sequence());
+            record.putLong(command.expiresAt());
+            putString(record, scope);
+            putString(record, text);
+            record.putInt(rollout != null ? rollout.wavePercent() : 0);
+            record.putInt(rollout != null ? rollout.waveIntervalSeconds() : 0);
+            record.putInt(rollout != null && rollout.maxInFlight() != null ? rollout.maxInFlight() : 0);
+        });
+    }
+
+    /**
+     * A fila do host foi entregue até a sequência informada.
+     */
+    public void drain(String hostname, long upToSequence) {
+        if (!enabled) {
+            return;
+        }
+        byte[] host = utf8(hostname);
+        append(DRAIN, 2 + host.length + 8, record -> {
+            putString(record, host);
+            record.putLong(upToSequence);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${agent.commands.journal.fsync-interval-ms:1000}")
+    public void forceToDisk() {
+        if (!enabled || !dirty || !"interval".equals(fsync)) {
+            return;
+        }
+        lock.lock();
+        try {
+            dirty = false;
+            buffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.commands.journal.compaction-interval-ms:300000}")
+    public void compactIfNeeded() {
+        if (!enabled || bytesSinceCompaction < compactionMinBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            compact();
+        } catch (IOException ex) {
+            failures.increment();
+            System.out.println("[JOURNAL] Falha na compactação: " + ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled || channel == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException ex) {
+            System.out.println("[JOURNAL] Falha ao fechar o journal: " + ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CommandJournalStatsDto stats() {
+        MappedByteBuffer current = buffer;
+        return new CommandJournalStatsDto(
+            enabled,
+            path.toString(),
+            fsync,
+            current != null ? current.position() : 0,
+            current != null ? current.capacity() : 0,
+            appended.sum(),
+            failures.sum(),
+            compactions.sum(),
+            lastCompactionMs,
+            lastRecoveryRecords,
+            lastRecoveryMs);
+    }
+
+    private void append(byte type, int payloadBytes, RecordWriter writer) {
+        lock.lock();
+        try {
+            int needed = RECORD_OVERHEAD + payloadBytes;
+            // Sempre sobra espaço para o marcador de fim (tamanho 0)
+            if (buffer.remaining() < needed + 4) {
+                compact();
+                if (buffer.remaining() < needed + 4) {
+                    remap(Math.max(buffer.capacity() * 2, buffer.position() + needed + 4));
+                }
+            }
+
+            int start = buffer.position();
+            buffer.putInt(1 + payloadBytes);
+            buffer.put(type);
+            writer.write(buffer);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(start + 4, 1 + payloadBytes));
+            buffer.putInt((int) crc.getValue());
+            buffer.putInt(buffer.position(), 0);
+
+            appended.increment();
+            bytesSinceCompaction += needed;
+            if ("always".equals(fsync)) {
+                buffer.force();
+            } else {
+                dirty = true;
+            }
+        } catch (IOException | RuntimeException ex) {
+            // O comando continua na fila em memória; só a durabilidade fica comprometida
+            failures.increment();
+            System.out.println("[JOURNAL] Falha ao gravar registro: " + ex.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Relê o próprio arquivo em vez das filas em memória: o resultado depende
+     * só do que foi gravado, sem corrida com quem está enfileirando.
+     */
+    private void compact() throws IOException {
+        State state = new State();
+        state.replay(buffer.duplicate().position(0).limit(buffer.position()));
+        rewrite(state);
+    }
+
+    private void rewrite(State state) throws IOException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        out.putInt(MAGIC);
+        out.putLong(state.maxSequence);
+        for (Map.Entry<String, TreeMap<Long, QueuedCommand>> queue : state.queues.entrySet()) {
+            byte[] host = utf8(queue.getKey());
+            for (QueuedCommand command : queue.getValue().values()) {
+                if (command.isExpired(now)) {
+                    continue;
+                }
+                byte[] text = utf8(command.command());
+                out = ensure(out, RECORD_OVERHEAD + 20 + host.length + text.length);
+                writeRecord(out, OFFER, 8 + 8 + 2 + host.length + 2 + text.length, record -> {
+                    record.putLong(command.sequence());
+                    record.putLong(command.expiresAt());
+                    putString(record, host);
+                    putString(record, text);
+                });
+            }
+        }
+        for (RecoveredBroadcast broadcast : state.broadcasts.values()) {
+            QueuedCommand command = broadcast.command();
+            if (command.isExpired(now)) {
+                continue;
+            }
+            byte[] scope = utf8(broadcast.group() != null ? broadcast.group() : "");
+            byte[] text = utf8(command.command());
+            RolloutPolicyDto rollout = broadcast.rollout();
+            out = ensure(out, RECORD_OVERHEAD + 32 + scope.length + text.length);
+            writeRecord(out, BROADCAST, 8 + 8 + 2 + scope.length + 2 + text.length + 12, record -> {
+                record.putLong(command.sequence());
+                record.putLong(command.expiresAt());
+                putString(record, scope);
+                putString(record, text);
+                record.putInt(rollout != null ? rollout.wavePercent() : 0);
+                record.putInt(rollout != null ? rollout.waveIntervalSeconds() : 0);
+                record.putInt(rollout != null && rollout.maxInFlight() != null ? rollout.maxInFlight() : 0);
+            });
+        }
+        int used = out.position();
+        out.flip();
+
+        try (FileChannel tempChannel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                tempChannel.write(out);
+            }
+            tempChannel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        remap(Math.max(initialSizeBytes, used * 2 + 4));
+        buffer.position(used);
+        buffer.putInt(used, 0);
+
+        bytesSinceCompaction = 0;
+        compactions.increment();
+        lastCompactionMs = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void remap(int capacity) throws IOException {
+        int position = buffer != null ? buffer.position() : 0;
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+        }
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+    }
+
+    private static ByteBuffer ensure(ByteBuffer out, int needed) {
+        if (out.remaining() >= needed) {
+            return out;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + needed));
+        out.flip();
+        return bigger.put(out);
+    }
+
+    private static void writeRecord(ByteBuffer out, byte type, int payloadBytes, RecordWriter writer) {
+        int start = out.position();
+        out.putInt(1 + payloadBytes);
+        out.put(type);
+        writer.write(out);
+        CRC32 crc = new CRC32();
+        crc.update(out.slice(start + 4, 1 + payloadBytes));
+        out.putInt((int) crc.getValue());
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Texto longo demais para o journal");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer record, byte[] bytes) {
+        record.putShort((short) bytes.length);
+        record.put(bytes);
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(ByteBuffer record);
+    }
+
+    public record RecoveredBroadcast(String group, QueuedCommand command, RolloutPolicyDto rollout) {}
+
+    /**
+     * Estado pendente reconstruído do journal, já sem comandos vencidos.
+     */
+    public record Recovered(
+        Map<String, List<QueuedCommand>> queues,
+        List<RecoveredBroadcast> broadcasts,
+        long maxSequence
+    ) {
+        static final Recovered EMPTY = new Recovered(Map.of(), List.of(), 0);
+
+        public int pendingCommands() {
+            int pending = broadcasts.size();
+            for (List<QueuedCommand> queue : queues.values()) {
+                pending += queue.size();
+            }
+            return pending;
+        }
+    }
+
+    /**
+     * Aplicação sequencial dos registros. Filas indexadas por sequência, então
+     * um mesmo comando gravado duas vezes (devolvido à fila) não duplica.
+     */
+    private static class State {
+        private final Map<String, TreeMap<Long, QueuedCommand>> queues = new LinkedHashMap<>();
+        private final TreeMap<Long, RecoveredBroadcast> broadcasts = new TreeMap<>();
+        private long maxSequence;
+        private long records;
+
+        void replay(ByteBuffer data) {
+            if (data.remaining() < HEADER_BYTES || data.getInt() != MAGIC) {
+                return;
+            }
+            maxSequence = Math.max(maxSequence, data.getLong());
+
+            CRC32 crc = new CRC32();
+            while (data.remaining() >= 4) {
+                int length = data.getInt();
+                if (length <= 0 || length + 4 > data.remaining()) {
+                    break;
+                }
+
+                int start = data.position();
+                crc.reset();
+                crc.update(data.slice(start, length));
+                if ((int) crc.getValue() != data.getInt(start + length)) {
+                    System.out.println("[JOURNAL] Registro corrompido na posição " + start + "; leitura encerrada.");
+                    break;
+                }
+
+                ByteBuffer record = data.slice(start, length);
+                apply(record.get(), record);
+                data.position(start + length + 4);
+                records++;
+            }
+        }
+
+        private void apply(byte type, ByteBuffer record) {
+            switch (type) {
+                case OFFER -> {
+                    long sequence = record.getLong();
+                    long expiresAt = record.getLong();
+                    String hostname = getString(record);
+                    QueuedCommand command = new QueuedCommand(sequence, getString(record), expiresAt);
+                    queues.computeIfAbsent(hostname, host -> new TreeMap<>()).put(sequence, command);
+                    maxSequence = Math.max(maxSequence, sequence);
+                }
+                case BROADCAST -> {
+                    long sequence = record.getLong();
+                    long expiresAt = record.getLong();
+                    String group = getString(record);
+                    QueuedCommand command = new QueuedCommand(sequence, getString(record), expiresAt);
+                    int wavePercent = record.getInt();
+                    int waveIntervalSeconds = record.getInt();
+                    int maxInFlight = record.getInt();
+                    RolloutPolicyDto rollout = wavePercent > 0
+                        ? new RolloutPolicyDto(wavePercent, waveIntervalSeconds, maxInFlight > 0 ? maxInFlight : null)
+                        : null;
+                    broadcasts.put(sequence, new RecoveredBroadcast(group.isEmpty() ? null : group, command, rollout));
+                    maxSequence = Math.max(maxSequence, sequence);
+                }
+                case DRAIN -> {
+                    String hostname = getString(record);
+                    long upTo = record.getLong();
+                    TreeMap<Long, QueuedCommand> queue = queues.get(hostname);
+                    if (queue != null) {
+                        queue.headMap(upTo, true).clear();
+                        if (queue.isEmpty()) {
+                            queues.remove(hostname);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException("Tipo de registro desconhecido: " + type);
+            }
+        }
+
+        Recovered toRecovered(long now) {
+            Map<String, List<QueuedCommand>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, TreeMap<Long, QueuedCommand>> queue : queues.entrySet()) {
+                List<QueuedCommand> commands = queue.getValue().values().stream()
+                    .filter(command -> !command.isExpired(now))
+                    .toList();
+                if (!commands.isEmpty()) {
+                    pending.put(queue.getKey(), commands);
+                }
+            }
+            List<RecoveredBroadcast> live = new ArrayList<>();
+            for (RecoveredBroadcast broadcast : broadcasts.values()) {
+                if (!broadcast.command().isExpired(now)) {
+                    live.add(broadcast);
+                }
+            }
+            return new Recovered(pending, live, maxSequence);
+        }
+    }
+}
@@ -42,16 +42,25 @@ public class SecurityConfigurations {
 
                 .requestMatchers(HttpMethod.POST,"/api/manager/register").permitAll()
                 .requestMatchers(HttpMethod.POST,"/api/manager/heartbeat").permitAll()
+                .requestMatchers(HttpMethod.POST,"/api/manager/heartbeat/poll").permitAll()
+                .requestMatchers(HttpMethod.POST,"/api/manager/heartbeat/batch").permitAll()
+                .requestMatchers(HttpMethod.GET,"/api/manager/stream").permitAll()
+                .requestMatchers(HttpMethod.POST,"/api/manager/stream/ack").permitAll()
                 .requestMatchers(HttpMethod.POST,"/api/manager/admin/queue_command").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.POST,"/api/manager/admin/queue_command_group").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.POST,"/api/manager/admin/queue_command_all").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET,"/api/manager/admin/agents").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.POST,"/api/manager/admin/schedule_command").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST,"/api/manager/admin/schedule_command/bulk").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET,"/api/manager/admin/schedule_command").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET,"/api/manager/admin/agents/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.DELETE,"/api/manager/admin/agents/{id}").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.PATCH,"/api/manager/admin/agents/{id}/approve").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET,"/api/manager/admin/agents/pending").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,"/api/manager/admin/groups/stats").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,"/api/manager/admin/commands").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,"/api/manager/admin/commands/{sequence}").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,"/api/manager/admin/metrics/**").hasRole("ADMIN")
 
                 .requestMatchers(HttpMethod.POST,"/users").permitAll()
                 .requestMatchers(HttpMethod.POST,"/users/{id}/activate").hasAnyRole("ADMIN")
@@ -85,6 +94,8 @@ public class SecurityConfigurations {
         configuration.addAllowedMethod(HttpMethod.PATCH);
         configuration.addAllowedMethod(HttpMethod.DELETE);
         configuration.addAllowedHeader("*"); 
+        // Paginação da listagem de agendamentos
+        configuration.addExposedHeader("X-Next-Cursor");
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -38,7 +38,11 @@ public class SecurityFilter extends OncePerRequestFilter {
                 (path.equals("/users") && request.getMethod().equals("POST")) ||
                 (path.equals("/auth/login") && request.getMethod().equals("POST")) ||
                 (path.equals("/api/manager/register") && request.getMethod().equals("POST")) ||
-                (path.equals("/api/manager/heartbeat") && request.getMethod().equals("POST"));
+                (path.equals("/api/manager/heartbeat") && request.getMethod().equals("POST")) ||
+                (path.equals("/api/manager/heartbeat/poll") && request.getMethod().equals("POST")) ||
+                (path.equals("/api/manager/heartbeat/batch") && request.getMethod().equals("POST")) ||
+                (path.equals("/api/manager/stream") && request.getMethod().equals("GET")) ||
+                (path.equals("/api/manager/stream/ack") && request.getMethod().equals("POST"));
 
         var token = recoverToken(request);
 
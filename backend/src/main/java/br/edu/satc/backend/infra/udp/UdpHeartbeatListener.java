@@ -0,0 +1,135 @@
+package br.edu.satc.backend.infra.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.UdpHeartbeatStatsDto;
+import br.edu.satc.backend.services.AgentService;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Listener UDP opcional para heartbeats de pura vivacidade.
+ *
+ * Cada datagrama tem 16 bytes (big-endian):
+ * <pre>
+ *  0..7   hash da agentKey (primeiros 8 bytes do SHA-256)
+ *  8..11  número de sequência (int, com wraparound)
+ *  12     código de status (0 = online, 1 = busy, 2 = shutting_down)
+ *  13     versão do formato (1)
+ *  14..15 época do boot (sorteada a cada início do agente; 0 = sem época)
+ * </pre>
+ * O datagrama alimenta o mesmo estado de vivacidade do heartbeat HTTP; a
+ * entrega de comandos continua no HTTP.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "agent.heartbeat.udp.enabled", havingValue = "true")
+public class UdpHeartbeatListener implements SmartLifecycle {
+    public static final int DATAGRAM_SIZE = 16;
+    private static final byte FORMAT_VERSION = 1;
+    private static final String[] STATUS_CODES = { "online", "busy", "shutting_down" };
+
+    private final AgentService agentService;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    @Value("${agent.heartbeat.udp.port:23457}")
+    private int port;
+
+    @Value("${agent.heartbeat.udp.receive-buffer-bytes:4194304}")
+    private int receiveBufferBytes;
+
+    private volatile DatagramChannel channel;
+    private volatile Thread worker;
+
+    @Override
+    public void start() {
+        try {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferBytes);
+            channel.bind(new InetSocketAddress(port));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Não foi possível abrir a porta UDP " + port, ex);
+        }
+
+        worker = Thread.ofPlatform().name("udp-heartbeat").daemon().start(this::receiveLoop);
+        System.out.println("[UDP] Escutando heartbeats na porta " + port);
+    }
+
+    private void receiveLoop() {
+        // Buffer único reaproveitado: o laço não aloca por datagrama
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DATAGRAM_SIZE + 1);
+
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                System.out.println("[UDP] Falha ao receber datagrama: " + ex.getMessage());
+                continue;
+            }
+
+            received.increment();
+            buffer.flip();
+            handle(buffer);
+        }
+    }
+
+    private void handle(ByteBuffer buffer) {
+        if (buffer.remaining() != DATAGRAM_SIZE || buffer.get(13) != FORMAT_VERSION) {
+            malformed.increment();
+            return;
+        }
+
+        long keyHash = buffer.getLong(0);
+        int sequence = buffer.getInt(8);
+        int statusCode = buffer.get(12);
+        int epoch = Short.toUnsignedInt(buffer.getShort(14));
+
+        if (statusCode < 0 || statusCode >= STATUS_CODES.length) {
+            malformed.increment();
+            return;
+        }
+
+        if (agentService.processUdpHeartbeat(keyHash, epoch, sequence, STATUS_CODES[statusCode])) {
+            accepted.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ex) {
+            System.out.println("[UDP] Falha ao fechar o canal: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return channel != null && channel.isOpen() && worker != null && worker.isAlive();
+    }
+
+    public UdpHeartbeatStatsDto stats() {
+        return new UdpHeartbeatStatsDto(true, port, received.sum(), accepted.sum(), rejected.sum(), malformed.sum());
+    }
+}
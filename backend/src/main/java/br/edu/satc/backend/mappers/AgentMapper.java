@@ -8,11 +8,15 @@ import br.edu.satc.backend.dtos.AgentResponseDto;
 import br.edu.satc.backend.dtos.AgenteRegisterResponseDto;
 import br.edu.satc.backend.dtos.HeartbeatRequestDto;
 import br.edu.satc.backend.models.AgentEntity;
+import br.edu.satc.backend.services.AgentState;
 
 @Mapper(componentModel = "spring")
 public interface AgentMapper {
     @Mapping(target = "group", source = "agentGroup")
     @Mapping(target = "key", source = "agentKey")
+    @Mapping(target = "intervalP50Ms", ignore = true)
+    @Mapping(target = "intervalP99Ms", ignore = true)
+    @Mapping(target = "missedBeats", ignore = true)
     AgentResponseDto toDto(AgentEntity agentEntity);
 
     @Mapping(target = "agentGroup",source = "group")
@@ -20,17 +24,25 @@ public interface AgentMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "lastHeartbeat", ignore = true)
+    @Mapping(target = "broadcastCursor", ignore = true)
+    @Mapping(target = "broadcastHeld", ignore = true)
     AgentEntity toEntity(AgentRegisterRequestDto agentRegisterRequestDto);
 
     @Mapping(target = "key",source = "agentKey")
     @Mapping(target = "id", expression = "java(String.format(\"%03d\", agentEntity.getId()))")
     AgenteRegisterResponseDto toRegisterDto(AgentEntity agentEntity);
 
+    @Mapping(target = "key",source = "agentKey")
+    @Mapping(target = "id", expression = "java(String.format(\"%03d\", agentState.getId()))")
+    AgenteRegisterResponseDto toRegisterDto(AgentState agentState);
+
     @Mapping(target = "agentGroup",source = "group")
     @Mapping(target = "hostname",source = "group")
     @Mapping(target = "agentKey", ignore = true)
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "lastHeartbeat", ignore = true)
+    @Mapping(target = "broadcastCursor", ignore = true)
+    @Mapping(target = "broadcastHeld", ignore = true)
     AgentEntity toHeartbeat(HeartbeatRequestDto heartbeatRequestDto);
 }
@@ -39,6 +39,13 @@ public class AgentEntity {
     @CreationTimestamp
     private LocalDateTime lastHeartbeat;
 
+    // Última geração de broadcast entregue; gravada pelo HeartbeatBuffer
+    private Long broadcastCursor;
+
+    // Gerações em rollout já passadas pelo cursor que este agente ainda espera, separadas por vírgula
+    @Column(length = 4000)
+    private String broadcastHeld;
+
     public AgentEntity(String hostname, String agentKey, String agentGroup) {
         this.hostname = hostname;
         this.agentKey = agentKey;
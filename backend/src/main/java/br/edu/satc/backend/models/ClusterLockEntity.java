@@ -0,0 +1,25 @@
+package br.edu.satc.backend.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Linha travada com SELECT ... FOR UPDATE para serializar uma operação entre
+ * as instâncias do backend.
+ */
+@Entity
+@Table(name = "cluster_locks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterLockEntity {
+
+    @Id
+    private String name;
+}
@@ -0,0 +1,34 @@
+package br.edu.satc.backend.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Instância do backend anunciada no banco; as vistas há pouco formam o anel
+ * de distribuição dos agentes.
+ */
+@Entity
+@Table(name = "cluster_nodes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterNodeEntity {
+
+    @Id
+    private String id;
+
+    // Endereço base repassado aos agentes no redirecionamento
+    @Column(nullable = false)
+    private String url;
+
+    // Epoch em milissegundos do último anúncio
+    @Column(nullable = false)
+    private long lastSeen;
+}
@@ -0,0 +1,15 @@
+package br.edu.satc.backend.models;
+
+/**
+ * O que fazer com um disparo que perdeu o horário (backend fora do ar, pausa
+ * longa da JVM). Repetições disparam no máximo uma vez pelas ocorrências
+ * perdidas e seguem da próxima depois de agora.
+ */
+public enum MisfirePolicy {
+    // Dispara assim que possível, com qualquer atraso
+    FIRE_NOW,
+    // Descarta a ocorrência perdida
+    SKIP,
+    // Dispara só se o atraso estiver dentro da janela do agendamento
+    FIRE_IF_WITHIN
+}
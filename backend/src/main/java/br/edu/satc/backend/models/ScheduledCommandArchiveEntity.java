@@ -0,0 +1,85 @@
+package br.edu.satc.backend.models;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Agendamentos executados que passaram da retenção. Só define a tabela; as
+ * linhas são movidas em lote pelo ScheduledCommandArchiver, via JDBC.
+ */
+@Entity
+@Table(name = "scheduled_commands_archive", indexes = {
+    @Index(name = "idx_scheduled_commands_archive_fire", columnList = "next_fire_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledCommandArchiveEntity {
+
+    // Mesmo id da linha em scheduled_commands
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private String command;
+
+    @Column(nullable = false)
+    private String targetType;
+
+    @Column(nullable = true)
+    private String targetValue;
+
+    @Column(nullable = false)
+    private LocalDateTime scheduledFor;
+
+    @Column(nullable = false)
+    private LocalDateTime nextFireAt;
+
+    @Column(nullable = false)
+    private boolean executed;
+
+    @Column(nullable = true)
+    private String recurrenceCron;
+
+    @Column(nullable = true)
+    private String recurrenceZone;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = true)
+    private Integer rolloutWavePercent;
+
+    @Column(nullable = true)
+    private Integer rolloutWaveIntervalSeconds;
+
+    @Column(nullable = true)
+    private Integer rolloutMaxInFlight;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = true)
+    private MisfirePolicy misfirePolicy;
+
+    @Column(nullable = true)
+    private Integer misfireWithinSeconds;
+
+    // Validade do comando disparado; sem valor usa agent.commands.ttl-ms
+    @Column(nullable = true)
+    private Long ttlSeconds;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
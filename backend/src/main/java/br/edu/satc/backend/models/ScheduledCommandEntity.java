@@ -5,9 +5,12 @@ import java.util.UUID;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -15,7 +18,9 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "scheduled_commands")
+@Table(name = "scheduled_commands", indexes = {
+    @Index(name = "idx_scheduled_commands_due", columnList = "executed, next_fire_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -38,9 +43,44 @@ public class ScheduledCommandEntity {
     @Column(nullable = false)
     private LocalDateTime scheduledFor;
 
+    // Próximo disparo: igual a scheduledFor, ou a próxima ocorrência da repetição.
+    // Anulável só para o ddl-auto conseguir criar a coluna em tabelas que já
+    // têm linhas; o ScheduledCommandService preenche as antigas ao subir
+    @Column(nullable = true)
+    private LocalDateTime nextFireAt;
+
+    // Repetições nunca ficam executed; só avançam nextFireAt
     @Column(nullable = false)
     private boolean executed = false;
 
+    @Column(nullable = true)
+    private String recurrenceCron;
+
+    @Column(nullable = true)
+    private String recurrenceZone;
+
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
-}
\ No newline at end of file
+
+    @Column(nullable = true)
+    private Integer rolloutWavePercent;
+
+    @Column(nullable = true)
+    private Integer rolloutWaveIntervalSeconds;
+
+    @Column(nullable = true)
+    private Integer rolloutMaxInFlight;
+
+    // Sem valor segue agent.schedules.misfire-policy
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = true)
+    private MisfirePolicy misfirePolicy;
+
+    // Janela do FIRE_IF_WITHIN; sem valor usa agent.schedules.late-tolerance-ms
+    @Column(nullable = true)
+    private Integer misfireWithinSeconds;
+
+    // Validade do comando disparado; sem valor usa agent.commands.ttl-ms
+    @Column(nullable = true)
+    private Long ttlSeconds;
+}
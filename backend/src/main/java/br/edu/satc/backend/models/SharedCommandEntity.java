@@ -0,0 +1,66 @@
+package br.edu.satc.backend.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Comando pendente compartilhado entre as instâncias do backend. Só define a
+ * tabela; leitura e escrita ficam no SharedCommandStore, via JDBC.
+ */
+@Entity
+@Table(name = "shared_commands", indexes = {
+    @Index(name = "idx_shared_commands_hostname", columnList = "hostname"),
+    @Index(name = "idx_shared_commands_broadcast", columnList = "broadcast, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SharedCommandEntity {
+
+    // Também é a sequência do comando (e a geração, nos broadcasts) em todas as instâncias
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Host alvo; nulo nos broadcasts
+    @Column(nullable = true)
+    private String hostname;
+
+    // Grupo alvo do broadcast; nulo para todos os hosts
+    @Column(nullable = true)
+    private String agentGroup;
+
+    @Column(nullable = false)
+    private boolean broadcast;
+
+    @Column(nullable = false)
+    private String command;
+
+    // Epoch em milissegundos, como em QueuedCommand
+    @Column(nullable = false)
+    private long expiresAt;
+
+    @Column(nullable = true)
+    private Integer rolloutWavePercent;
+
+    @Column(nullable = true)
+    private Integer rolloutWaveIntervalSeconds;
+
+    @Column(nullable = true)
+    private Integer rolloutMaxInFlight;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -19,6 +19,8 @@ public interface AgentRepository extends JpaRepository<AgentEntity, Long> {
 
     List<AgentEntity> findAllByAgentGroup(String agentGroup);
 
+    boolean existsByAgentGroup(String agentGroup);
+
     Page<AgentEntity> findAll(Pageable pageable);
 
     List<AgentEntity> findByStatusNotAndLastHeartbeatBefore(String status, LocalDateTime timestamp);
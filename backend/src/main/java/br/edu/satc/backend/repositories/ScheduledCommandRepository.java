@@ -4,12 +4,44 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import br.edu.satc.backend.models.ScheduledCommandEntity;
 
 public interface ScheduledCommandRepository extends JpaRepository<ScheduledCommandEntity, UUID> {
-    List<ScheduledCommandEntity> findByExecutedFalse();
+    // Só uma instância consegue marcar: as demais recebem 0 e não executam
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledCommandEntity c SET c.executed = true WHERE c.id = :id AND c.executed = false")
+    int markExecuted(@Param("id") UUID id);
 
-    List<ScheduledCommandEntity> findByExecutedFalseAndScheduledForBefore(LocalDateTime time);
+    // Repetição: avança só quem ainda vê a ocorrência esperada, como o markExecuted
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledCommandEntity c SET c.nextFireAt = :next WHERE c.id = :id AND c.nextFireAt = :expected AND c.executed = false")
+    int advanceNextFire(@Param("id") UUID id, @Param("expected") LocalDateTime expected, @Param("next") LocalDateTime next);
+
+    // Listagem por chave: ordem (nextFireAt, id), sem OFFSET
+    @Query("SELECT c FROM ScheduledCommandEntity c WHERE c.executed IN :states AND c.nextFireAt >= :from AND c.nextFireAt < :to "
+        + "ORDER BY c.nextFireAt, c.id")
+    List<ScheduledCommandEntity> findPage(
+        @Param("states") List<Boolean> states,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to,
+        Pageable page);
+
+    @Query("SELECT c FROM ScheduledCommandEntity c WHERE c.executed IN :states AND c.nextFireAt >= :from AND c.nextFireAt < :to "
+        + "AND (c.nextFireAt > :afterAt OR (c.nextFireAt = :afterAt AND c.id > :afterId)) ORDER BY c.nextFireAt, c.id")
+    List<ScheduledCommandEntity> findPageAfter(
+        @Param("states") List<Boolean> states,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to,
+        @Param("afterAt") LocalDateTime afterAt,
+        @Param("afterId") UUID afterId,
+        Pageable page);
 }
@@ -0,0 +1,268 @@
+package br.edu.satc.backend.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.AgentRegistryStatsDto;
+import br.edu.satc.backend.infra.cluster.ClusterMembership;
+import br.edu.satc.backend.models.AgentEntity;
+import br.edu.satc.backend.repositories.AgentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Registro em memória dos agentes, indexado por agentKey.
+ *
+ * É carregado uma vez na subida e mantido coerente pelo {@link AgentService}
+ * (registro, aprovação, remoção e heartbeats), de modo que validar a chave de
+ * um heartbeat é apenas uma consulta em hash, sem SQL.
+ *
+ * Com agent.cluster.enabled guarda só os agentes dos quais esta instância é
+ * dona no anel do {@link ClusterMembership}.
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentRegistry {
+    // Dois Nodes de ConcurrentHashMap (por chave e por hash), o Node do
+    // conjunto do grupo, AgentState, os Longs do id e do hash, a flag da roda
+    // de offline e o histograma de intervalos, sem contar as strings
+    // (somadas à parte)
+    private static final long FIXED_BYTES_PER_AGENT = 48 + 48 + 32 + 64 + 16 + 16 + 16 + 340;
+    private static final long STRING_OVERHEAD_BYTES = 24 + 16;
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    private final AgentRepository agentRepository;
+    private final ClusterMembership clusterMembership;
+
+    private final Map<String, AgentState> byKey = new ConcurrentHashMap<>();
+    private final Map<Long, AgentState> byKeyHash = new ConcurrentHashMap<>();
+    // Índice invertido grupo -> agentes; grupos sem agente deixam de existir
+    private final Map<String, Set<AgentState>> byGroup = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void load() {
+        loadOwned(null);
+        System.out.println("[REGISTRY] " + byKey.size() + " agentes carregados em memória.");
+    }
+
+    /**
+     * Ajusta o registro depois que o anel mudou: solta os agentes que passaram
+     * para outra instância e carrega os que passaram para esta.
+     */
+    public Rebalance rebalance() {
+        List<AgentState> released = new ArrayList<>();
+        for (AgentState state : byKey.values()) {
+            if (!clusterMembership.owns(state.getKeyHash())) {
+                remove(state.getAgentKey());
+                released.add(state);
+            }
+        }
+
+        List<AgentState> acquired = new ArrayList<>();
+        loadOwned(acquired);
+        return new Rebalance(released, acquired);
+    }
+
+    // Em páginas, para não trazer a tabela inteira de uma vez
+    private void loadOwned(List<AgentState> acquired) {
+        Page<AgentEntity> page;
+        int number = 0;
+        do {
+            page = agentRepository.findAll(PageRequest.of(number++, LOAD_PAGE_SIZE, Sort.by("id")));
+            for (AgentEntity agent : page) {
+                if (!byKey.containsKey(agent.getAgentKey()) && clusterMembership.owns(AgentState.hashKey(agent.getAgentKey()))) {
+                    AgentState state = new AgentState(agent);
+                    index(state);
+                    if (acquired != null) {
+                        acquired.add(state);
+                    }
+                }
+            }
+        } while (page.hasNext());
+    }
+
+    public AgentState find(String agentKey) {
+        AgentState state = byKey.get(agentKey);
+        if (state == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return state;
+    }
+
+    /**
+     * Consulta sem contar acerto/erro, para leituras administrativas.
+     */
+    public AgentState peek(String agentKey) {
+        return byKey.get(agentKey);
+    }
+
+    public AgentState findByKeyHash(long keyHash) {
+        AgentState state = byKeyHash.get(keyHash);
+        if (state == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return state;
+    }
+
+    /**
+     * Registra ou atualiza o agente. O de outra instância não é guardado: o
+     * estado devolvido serve só para a operação em andamento.
+     */
+    public AgentState put(AgentEntity agent) {
+        AgentState current = byKey.get(agent.getAgentKey());
+        if (current != null && current.getId().equals(agent.getId())) {
+            current.refresh(agent);
+            regroup(current);
+            return current;
+        }
+
+        AgentState state = new AgentState(agent);
+        if (clusterMembership.owns(state.getKeyHash())) {
+            index(state);
+        }
+        return state;
+    }
+
+    public void remove(String agentKey) {
+        AgentState state = byKey.remove(agentKey);
+        if (state != null) {
+            byKeyHash.remove(state.getKeyHash(), state);
+            state.lock().lock();
+            try {
+                leaveGroup(state);
+            } finally {
+                state.lock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Atualiza o índice de grupos depois que o agente trocou de grupo (no
+     * heartbeat ou na aprovação). O grupo antigo é o gravado no próprio
+     * {@link AgentState} na última indexação, lido e trocado sob o lock do
+     * agente: com trocas concorrentes ele termina só no grupo atual.
+     */
+    public void regroup(AgentState state) {
+        if (Objects.equals(state.getIndexedGroup(), state.getGroup())) {
+            return;
+        }
+        state.lock().lock();
+        try {
+            // Removido do registro, ou de outra instância: fica fora do índice
+            if (byKey.get(state.getAgentKey()) != state) {
+                return;
+            }
+            leaveGroup(state);
+            joinGroup(state);
+        } finally {
+            state.lock().unlock();
+        }
+    }
+
+    private void index(AgentState state) {
+        byKey.put(state.getAgentKey(), state);
+        byKeyHash.put(state.getKeyHash(), state);
+        state.lock().lock();
+        try {
+            joinGroup(state);
+        } finally {
+            state.lock().unlock();
+        }
+    }
+
+    private void joinGroup(AgentState state) {
+        String group = state.getGroup();
+        state.setIndexedGroup(group);
+        if (group != null) {
+            byGroup.computeIfAbsent(group, key -> ConcurrentHashMap.newKeySet()).add(state);
+        }
+    }
+
+    private void leaveGroup(AgentState state) {
+        String group = state.getIndexedGroup();
+        state.setIndexedGroup(null);
+        if (group == null) {
+            return;
+        }
+        byGroup.computeIfPresent(group, (key, members) -> {
+            members.remove(state);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    public Collection<AgentState> all() {
+        return byKey.values();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    public Set<AgentState> inGroup(String group) {
+        Set<AgentState> members = byGroup.get(group);
+        return members != null ? members : Set.of();
+    }
+
+    public boolean hasGroup(String group) {
+        return byGroup.containsKey(group);
+    }
+
+    public Map<String, Set<AgentState>> groups() {
+        return byGroup;
+    }
+
+    /**
+     * @param group grupo, ou null para contar todos os aprovados
+     */
+    public int countApproved(String group) {
+        int count = 0;
+        for (AgentState state : group != null ? inGroup(group) : byKey.values()) {
+            if (state.isApproved()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public AgentRegistryStatsDto stats() {
+        long stringBytes = 0;
+        for (AgentState state : byKey.values()) {
+            stringBytes += stringBytes(state.getAgentKey()) + stringBytes(state.getHostname())
+                + stringBytes(state.getGroup());
+        }
+
+        int size = byKey.size();
+        long estimatedBytes = size * FIXED_BYTES_PER_AGENT + stringBytes;
+        long per100k = size > 0 ? estimatedBytes * 100_000 / size : 0;
+
+        return new AgentRegistryStatsDto(size, byGroup.size(), hits.sum(), misses.sum(), estimatedBytes, per100k);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + value.length();
+    }
+
+    /**
+     * @param released agentes que passaram para outra instância
+     * @param acquired agentes que passaram para esta instância
+     */
+    public record Rebalance(List<AgentState> released, List<AgentState> acquired) {}
+}
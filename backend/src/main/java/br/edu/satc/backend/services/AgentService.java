@@ -1,5 +1,6 @@
 package br.edu.satc.backend.services;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -7,49 +8,108 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import br.edu.satc.backend.dtos.AgentRegisterRequestDto;
 import br.edu.satc.backend.dtos.AgentResponseDto;
 import br.edu.satc.backend.dtos.AgenteRegisterResponseDto;
 import br.edu.satc.backend.dtos.CommandAllHostsRequestDto;
+import br.edu.satc.backend.dtos.CommandDeliveryDto;
 import br.edu.satc.backend.dtos.CommandGroupHostsRequestDto;
 import br.edu.satc.backend.dtos.CommandHostUniqueRequestDto;
+import br.edu.satc.backend.dtos.GroupHeartbeatStatsDto;
+import br.edu.satc.backend.dtos.HeartbeatBatchItemDto;
+import br.edu.satc.backend.dtos.HeartbeatBatchRequestDto;
+import br.edu.satc.backend.dtos.HeartbeatBatchResponseDto;
 import br.edu.satc.backend.dtos.HeartbeatRequestDto;
 import br.edu.satc.backend.dtos.HeartbeatResponseDto;
 import br.edu.satc.backend.dtos.MessageResponseDto;
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+import br.edu.satc.backend.infra.cluster.ClusterMembership;
+import br.edu.satc.backend.infra.cluster.SharedCommandStore;
+import br.edu.satc.backend.infra.journal.CommandJournal;
 import br.edu.satc.backend.mappers.AgentMapper;
 import br.edu.satc.backend.models.AgentEntity;
 import br.edu.satc.backend.repositories.AgentRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
 
 @Service
 @RequiredArgsConstructor
 public class AgentService {
+    private static final int FAN_OUT_CHUNK_SIZE = 256;
+
     private final AgentRepository agentRepository;
-    private final Map<String, String> commandQueue = new ConcurrentHashMap<>();
+    private final CommandQueue commandQueue;
     private final AgentMapper agentMapper;
+    private final HeartbeatBuffer heartbeatBuffer;
+    private final AgentRegistry agentRegistry;
+    private final HeartbeatWaiters heartbeatWaiters;
+    private final AgentStreams agentStreams;
+    private final ExecutorService fanOutExecutor;
+    private final OfflineDetector offlineDetector;
+    private final BroadcastLog broadcastLog;
+    private final CommandTracker commandTracker;
+    private final CommandJournal commandJournal;
+    private final SharedCommandStore sharedCommands;
+    private final ClusterMembership clusterMembership;
+
+    @Value("${agent.heartbeat.expected-interval-ms:10000}")
+    private long expectedIntervalMs;
+
+    @Value("${agent.heartbeat.long-poll.timeout-ms:25000}")
+    private long longPollTimeoutMs;
+
+    @Value("${agent.heartbeat.long-poll.max-timeout-ms:55000}")
+    private long longPollMaxTimeoutMs;
+
+    /**
+     * Reconstrói filas e broadcasts pendentes a partir do journal. A numeração
+     * dos comandos continua acima de qualquer cursor gravado, para que um
+     * broadcast novo nunca pareça já consumido.
+     *
+     * Com a fila compartilhada os pendentes estão no banco e a numeração vem
+     * dele; o journal local não é lido.
+     */
+    @PostConstruct
+    public void recoverCommands() {
+        if (sharedCommands.isEnabled()) {
+            sharedCommands.poll();
+            return;
+        }
+
+        long floor = 0;
+        for (AgentState agent : agentRegistry.all()) {
+            floor = Math.max(floor, agent.getBroadcastCursor());
+        }
+
+        CommandJournal.Recovered recovered = commandJournal.recover();
+        commandQueue.recover(recovered.queues(), Math.max(floor, recovered.maxSequence()));
+        broadcastLog.recover(recovered.broadcasts());
+    }
 
     public AgenteRegisterResponseDto registerAgent(AgentRegisterRequestDto dto) {
         // Verifica se já existe um agente com a mesma chave
-        Optional<AgentEntity> existingAgent = agentRepository.findByAgentKey(dto.agentKey());
-        
-        if (existingAgent.isPresent()) {
-            AgentEntity agent = existingAgent.get();
-            // Se o agente estiver pendente, só retorna mensagem informando
-            if ("pending".equals(agent.getStatus())) {
-                return agentMapper.toRegisterDto(agent);
-            }
+        AgentState existingAgent = findAgent(dto.agentKey());
 
-            // Se já aprovado, apenas retorna os dados
-            return agentMapper.toRegisterDto(agent);
+        if (existingAgent != null) {
+            // Pendente ou já aprovado, apenas retorna os dados
+            return agentMapper.toRegisterDto(existingAgent);
         }
 
         // Cria um novo registro pendente
@@ -61,35 +121,266 @@ public class AgentService {
         newAgent.setLastHeartbeat(LocalDateTime.now());
 
         agentRepository.save(newAgent);
+        agentRegistry.put(newAgent);
 
         return agentMapper.toRegisterDto(newAgent);
     }
 
 
 
-    public HeartbeatResponseDto processHeartbeat(String agentKey, HeartbeatRequestDto dto) {
-        Optional<AgentEntity> agentOpt = agentRepository.findByAgentKey(agentKey);
-        
-        if (agentOpt.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Chave inválida");
+    /**
+     * @param redirected o agente acabou de seguir um redirect: é atendido aqui
+     *                   mesmo que o anel desta instância aponte outro dono, para
+     *                   não ficar indo e voltando enquanto as instâncias divergem
+     */
+    public HeartbeatResponseDto processHeartbeat(String agentKey, HeartbeatRequestDto dto, boolean redirected) {
+        String owner = redirected ? null : redirectFor(agentKey);
+        if (owner != null) {
+            return QueuedCommand.toRedirect(owner);
+        }
+
+        AgentState agent = acceptHeartbeat(agentKey, dto, true);
+        return QueuedCommand.toResponse(collectCommands(agent));
+    }
+
+    public DeferredResult<HeartbeatResponseDto> processHeartbeatLongPoll(String agentKey, HeartbeatRequestDto dto, Long timeoutSeconds,
+            boolean redirected) {
+        String owner = redirected ? null : redirectFor(agentKey);
+        if (owner != null) {
+            DeferredResult<HeartbeatResponseDto> result = new DeferredResult<>();
+            result.setResult(QueuedCommand.toRedirect(owner));
+            return result;
+        }
+
+        // A volta do long-poll depende de quando chega comando, não da cadência do agente
+        AgentState agent = acceptHeartbeat(agentKey, dto, false);
+        String hostname = agent.getHostname();
+
+        List<QueuedCommand> commands = collectCommands(agent);
+        if (!commands.isEmpty()) {
+            DeferredResult<HeartbeatResponseDto> result = new DeferredResult<>();
+            result.setResult(QueuedCommand.toResponse(commands));
+            return result;
+        }
+
+        long timeoutMs = timeoutSeconds != null
+            ? Math.clamp(timeoutSeconds * 1000, 1000, longPollMaxTimeoutMs)
+            : longPollTimeoutMs;
+
+        DeferredResult<HeartbeatResponseDto> result = heartbeatWaiters.park(
+            agent,
+            timeoutMs,
+            () -> collectCommands(agent),
+            undelivered -> restoreCommands(agent, undelivered));
+
+        // O comando pode ter chegado entre a consulta acima e o estacionamento
+        if (hasPendingCommands(agent)) {
+            heartbeatWaiters.wake(hostname);
+        }
+        return result;
+    }
+
+    /**
+     * Heartbeats agregados por um relay: valida todas as chaves numa passada e
+     * devolve, por agentKey, a resposta que cada agente receberia sozinho.
+     * A gravação sai no próximo flush do {@link HeartbeatBuffer}, num único lote.
+     */
+    public HeartbeatBatchResponseDto processHeartbeatBatch(HeartbeatBatchRequestDto dto) {
+        Map<String, HeartbeatResponseDto> responses = new LinkedHashMap<>();
+        List<String> rejected = new ArrayList<>();
+
+        for (HeartbeatBatchItemDto item : dto.heartbeats()) {
+            String owner = redirectFor(item.agentKey());
+            if (owner != null) {
+                responses.put(item.agentKey(), QueuedCommand.toRedirect(owner));
+                continue;
+            }
+
+            AgentState agent = findAgent(item.agentKey());
+            if (agent == null || !agent.isApproved()) {
+                rejected.add(item.agentKey());
+                continue;
+            }
+
+            HeartbeatRequestDto heartbeat = item.heartbeat();
+            commandTracker.acknowledge(agent, heartbeat.acks());
+            touch(agent, heartbeat.status(), heartbeat.group() != null ? heartbeat.group() : agent.getGroup(), true);
+            responses.put(item.agentKey(), QueuedCommand.toResponse(collectCommands(agent)));
+        }
+
+        return new HeartbeatBatchResponseDto(responses, rejected);
+    }
+
+    /**
+     * Heartbeat UDP: apenas vivacidade, sem resposta e sem entrega de comando.
+     *
+     * @return false para hash desconhecido, agente não aprovado ou sequência repetida
+     */
+    public boolean processUdpHeartbeat(long keyHash, int epoch, int sequence, String status) {
+        AgentState agent = agentRegistry.findByKeyHash(keyHash);
+        if (agent == null || !agent.isApproved() || !agent.acceptUdpSequence(epoch, sequence)) {
+            return false;
+        }
+
+        touch(agent, status, agent.getGroup(), true);
+        return true;
+    }
+
+    public SseEmitter openCommandStream(String agentKey) {
+        AgentState agent = authenticate(agentKey);
+        touch(agent, "online", agent.getGroup(), false);
+
+        SseEmitter emitter = agentStreams.open(agent);
+
+        // Entrega pelo canal o que ficou enfileirado enquanto o agente não estava conectado
+        flushToStream(agent);
+        return emitter;
+    }
+
+    /**
+     * Confirmação dos comandos recebidos pelo canal SSE, que não tem heartbeat
+     * para levar os "acks". Como no heartbeat, a primeira confirmação liga o
+     * acompanhamento de entrega do agente.
+     */
+    public void acknowledgeStreamCommands(String agentKey, List<Long> acks) {
+        commandTracker.acknowledge(authenticate(agentKey), acks);
+    }
+
+    /**
+     * Tudo que o agente deve receber agora: broadcasts que ainda não consumiu
+     * e a fila do próprio host, na ordem em que foram emitidos, mais o que
+     * venceu o prazo de confirmação.
+     */
+    private List<QueuedCommand> collectCommands(AgentState agent) {
+        long cursor = agent.getBroadcastCursor();
+        List<QueuedCommand> broadcasts = broadcastLog.collect(agent);
+        List<QueuedCommand> direct = drainDirect(agent.getHostname());
+        // O cursor também anda sem entrega quando só passou por entradas retidas
+        if (!broadcasts.isEmpty() || agent.getBroadcastCursor() != cursor) {
+            heartbeatBuffer.persistCursor(agent);
+        }
+        if (broadcasts.isEmpty()) {
+            return commandTracker.deliver(agent, direct);
+        }
+        if (direct.isEmpty()) {
+            return commandTracker.deliver(agent, broadcasts);
         }
 
-        AgentEntity agent = agentOpt.get();
+        List<QueuedCommand> commands = new ArrayList<>(broadcasts.size() + direct.size());
+        commands.addAll(broadcasts);
+        commands.addAll(direct);
+        commands.sort(Comparator.comparingLong(QueuedCommand::sequence));
+        return commandTracker.deliver(agent, commands);
+    }
+
+    /**
+     * Fila local do host mais as linhas reivindicadas da fila compartilhada.
+     */
+    private List<QueuedCommand> drainDirect(String hostname) {
+        List<QueuedCommand> local = commandQueue.drain(hostname);
+        List<QueuedCommand> shared = sharedCommands.claim(hostname);
+        if (shared.isEmpty()) {
+            return local;
+        }
+        if (local.isEmpty()) {
+            return shared;
+        }
+
+        List<QueuedCommand> commands = new ArrayList<>(local.size() + shared.size());
+        commands.addAll(local);
+        commands.addAll(shared);
+        commands.sort(Comparator.comparingLong(QueuedCommand::sequence));
+        return commands;
+    }
+
+    // Devolvidos à fila local: já foram reivindicados por esta instância
+    private void restoreCommands(AgentState agent, List<QueuedCommand> undelivered) {
+        commandQueue.restore(agent.getHostname(), commandTracker.undelivered(agent, undelivered));
+    }
+
+    private boolean hasPendingCommands(AgentState agent) {
+        return commandQueue.hasPending(agent.getHostname())
+            || sharedCommands.hasPending(agent.getHostname())
+            || broadcastLog.hasPending(agent);
+    }
+
+    private void flushToStream(AgentState agent) {
+        List<QueuedCommand> commands = collectCommands(agent);
+        if (!commands.isEmpty() && !agentStreams.push(agent.getHostname(), commands)) {
+            restoreCommands(agent, commands);
+        }
+    }
+
+    private AgentState acceptHeartbeat(String agentKey, HeartbeatRequestDto dto, boolean periodic) {
+        AgentState agent = authenticate(agentKey);
+        String group = dto.group() != null ? dto.group() : agent.getGroup();
+        commandTracker.acknowledge(agent, dto.acks());
+        touch(agent, dto.status(), group, periodic);
+        return agent;
+    }
+
+    private AgentState authenticate(String agentKey) {
+        AgentState agent = findAgent(agentKey);
+
+        if (agent == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Chave inválida");
+        }
 
         // ⚠️ Bloqueia se não aprovado
-        if (!"approved".equals(agent.getStatus())) {
+        if (!agent.isApproved()) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Agente pendente ou não aprovado");
         }
+        return agent;
+    }
 
-        agent.setStatus(dto.status());
-        agent.setLastHeartbeat(LocalDateTime.now());
-        if (dto.group() != null && !dto.group().equals(agent.getAgentGroup())) {
-            agent.setAgentGroup(dto.group());
+    /**
+     * @return endereço da instância dona do agente, ou null quando é esta (ou
+     *         sem cluster). Agente no registro já é desta instância.
+     */
+    public String redirectFor(String agentKey) {
+        if (!clusterMembership.isEnabled() || agentRegistry.peek(agentKey) != null) {
+            return null;
         }
-        agentRepository.save(agent);
+        return clusterMembership.redirectFor(AgentState.hashKey(agentKey));
+    }
+
+    /**
+     * Com várias instâncias o agente pode ter sido registrado ou aprovado em
+     * outra; nesse caso, e só nele, a chave desconhecida ou pendente é
+     * conferida no banco. O agente de outra instância (heartbeat atendido
+     * depois de um redirect) volta como estado avulso: não entra no registro,
+     * no índice de grupos nem na roda do {@link OfflineDetector}.
+     */
+    private AgentState findAgent(String agentKey) {
+        AgentState agent = agentRegistry.find(agentKey);
+        if (!sharedCommands.isEnabled() || (agent != null && agent.isApproved())) {
+            return agent;
+        }
+
+        Optional<AgentEntity> entity = agentRepository.findByAgentKey(agentKey);
+        if (entity.isEmpty()) {
+            return agent;
+        }
+        AgentState state = agentRegistry.put(entity.get());
+        if (agent != null && state.isApproved()) {
+            state.restoreBroadcastCursor(entity.get());
+        }
+        return state;
+    }
 
-        String command = getAndClearCommand(agent.getHostname());
-        return new HeartbeatResponseDto(command != null ? command : "ok");
+    /**
+     * @param periodic heartbeat da cadência do agente; contatos fora dela
+     *                 (long-poll, SSE) não entram no histograma de intervalos
+     */
+    private void touch(AgentState agent, String status, String group, boolean periodic) {
+        heartbeatBuffer.heartbeat(agent, status, group);
+        agentRegistry.regroup(agent);
+        if (periodic) {
+            agent.getIntervals().beat(System.currentTimeMillis(), expectedIntervalMs);
+        } else {
+            agent.getIntervals().pause();
+        }
+        offlineDetector.track(agent);
     }
 
 
@@ -102,7 +393,7 @@ public class AgentService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Agente '" + hostname + "' não encontrado no banco de dados.");
         }
 
-        this.queueCommand(hostname, command); 
+        this.queueCommand(hostname, command, dto.ttlSeconds());
 
         return new MessageResponseDto("comando_enfileirado");
     }
@@ -111,14 +402,14 @@ public class AgentService {
         String groupName = dto.group();
         String command = dto.command();
 
-        List<AgentEntity> agentsInGroup = agentRepository.findAllByAgentGroup(groupName);
-        if (agentsInGroup.isEmpty()) {
+        if (!agentRegistry.hasGroup(groupName)
+                && !(sharedCommands.isEnabled() && agentRepository.existsByAgentGroup(groupName))) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Nenhum agente encontrado no grupo '" + groupName + "'.");
         }
 
-        for (AgentEntity agent : agentsInGroup) {
-            this.queueCommand(agent.getHostname(), command);
-        }
+        QueuedCommand queued = publishBroadcast(groupName, command, dto.ttlSeconds(), dto.rollout());
+        commandTracker.register(queued, "group:" + groupName, agentRegistry.countApproved(groupName));
+        notifyBroadcast(groupName);
         
         return new MessageResponseDto("Shutdown solicitado ao grupo: " + groupName);
     }
@@ -126,29 +417,37 @@ public class AgentService {
     public MessageResponseDto queueCommandForAll(CommandAllHostsRequestDto dto) {
         String command = dto.command();
 
-        List<AgentEntity> allAgents = agentRepository.findAll();
-        if (allAgents.isEmpty()) {
+        if (agentRegistry.size() == 0 && !(sharedCommands.isEnabled() && agentRepository.count() > 0)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Nenhum agente registrado no sistema.");
         }
 
-        for (AgentEntity agent : allAgents) {
-            this.queueCommand(agent.getHostname(), command);
-        }
+        QueuedCommand queued = publishBroadcast(null, command, dto.ttlSeconds(), dto.rollout());
+        commandTracker.register(queued, "all", agentRegistry.countApproved(null));
+        notifyBroadcast(null);
         
         return new MessageResponseDto("Shutdown solicitado para todos os hosts");
     }
+
+    private QueuedCommand publishBroadcast(String group, String command, Long ttlSeconds, RolloutPolicyDto rollout) {
+        if (sharedCommands.isEnabled()) {
+            return sharedCommands.publish(group, command, commandQueue.expiresAt(ttlSeconds), rollout);
+        }
+        return broadcastLog.publish(group, command, ttlSeconds, rollout);
+    }
     
     public Page<AgentResponseDto> findAgents(Pageable pageable) {
-       return agentRepository.findAll(pageable).map(agentMapper::toDto);
+       return agentRepository.findAll(pageable).map(this::toDto);
     }
 
     public AgentResponseDto findAgentByHost(Long id) {
-        return agentMapper.toDto(findByHostOrThrow(id));
+        return toDto(findByHostOrThrow(id));
    
     }
 
     public MessageResponseDto deleteByHostId(Long id) {
-        agentRepository.delete(findByHostOrThrow(id));
+        AgentEntity agent = findByHostOrThrow(id);
+        agentRepository.delete(agent);
+        agentRegistry.remove(agent.getAgentKey());
         return new MessageResponseDto("Agente removido com sucesso");
     }
 
@@ -159,57 +458,213 @@ public class AgentService {
             return new MessageResponseDto("Agente já está aprovado.");
         }
 
+        boolean wasPending = "pending".equals(agent.getStatus());
         agent.setStatus("approved");
+        if (wasPending) {
+            agent.setBroadcastCursor(broadcastLog.latest());
+        }
         agentRepository.save(agent);
+        AgentState state = agentRegistry.put(agent);
+        if (wasPending) {
+            state.resetBroadcastCursor(broadcastLog.latest());
+        }
+        offlineDetector.track(state);
         return new MessageResponseDto("Agente aprovado com sucesso!");
     }
 
+    public List<GroupHeartbeatStatsDto> getGroupHeartbeatStats() {
+        Map<String, GroupAccumulator> groups = new TreeMap<>();
+        agentRegistry.groups().forEach((group, members) -> {
+            GroupAccumulator accumulator = new GroupAccumulator();
+            for (AgentState agent : members) {
+                if (agent.isApproved()) {
+                    accumulator.add(agent);
+                }
+            }
+            if (accumulator.agents > 0) {
+                groups.put(group, accumulator);
+            }
+        });
+
+        return groups.entrySet().stream().map(entry -> entry.getValue().toDto(entry.getKey())).toList();
+    }
+
     public List<AgentResponseDto> getPendingAgents() {
-        return agentRepository.findByStatus("pending").stream().map(agentMapper::toDto).toList();
+        return agentRepository.findByStatus("pending").stream().map(this::toDto).toList();
     }
 
-    @Scheduled(fixedRate = 60000)
-    public void checkOfflineAgents() {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(5);
+    /**
+     * Heartbeats sem mudança não são gravados a cada batida, então status e
+     * último heartbeat vêm do estado residente quando o agente está nele.
+     */
+    private AgentResponseDto toDto(AgentEntity entity) {
+        AgentResponseDto dto = agentMapper.toDto(entity);
+        AgentState state = agentRegistry.peek(entity.getAgentKey());
+        if (state == null || state.getLastSeen() == null) {
+            return dto;
+        }
 
-        List<AgentEntity> staleAgents = agentRepository.findByStatusNotAndLastHeartbeatBefore("offline", cutoffTime);
+        IntervalHistogram intervals = state.getIntervals();
+        return new AgentResponseDto(
+            dto.id(),
+            state.getGroup(),
+            dto.hostname(),
+            dto.key(),
+            state.getStatus(),
+            state.getLastSeen(),
+            intervals.percentile(0.5),
+            intervals.percentile(0.99),
+            intervals.getMissedBeats());
+    }
 
-        if (staleAgents.isEmpty()) {
-            return; 
+    private AgentEntity findByHostOrThrow(Long id) {
+        Optional<AgentEntity> agent = agentRepository.findById(id);
+        if(agent.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,"Agente não encontrado");
+        }
+        return agent.get();
+    }
+
+    /**
+     * O broadcast já está no {@link BroadcastLog}; aqui só se antecipa a entrega
+     * para quem está conectado (SSE) ou estacionado (long-poll). Os demais
+     * recebem no próximo heartbeat.
+     *
+     * @param group grupo do broadcast, ou null para todos os hosts
+     */
+    private void notifyBroadcast(String group) {
+        // Em rollout só interessa quem já foi liberado
+        Predicate<AgentState> target = agent ->
+            (group == null || group.equals(agent.getGroup())) && broadcastLog.hasPending(agent);
+        List<AgentState> streaming = agentStreams.connectedAgents().stream().filter(target).toList();
+        if (streaming.size() <= FAN_OUT_CHUNK_SIZE) {
+            streaming.forEach(this::flushToStream);
+        } else {
+            // Pushes SSE podem bloquear em socket; cada bloco roda em paralelo no fanOutExecutor
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (int start = 0; start < streaming.size(); start += FAN_OUT_CHUNK_SIZE) {
+                List<AgentState> chunk = streaming.subList(start, Math.min(start + FAN_OUT_CHUNK_SIZE, streaming.size()));
+                chunks.add(CompletableFuture.runAsync(() -> chunk.forEach(this::flushToStream), fanOutExecutor));
+            }
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
         }
 
-        System.out.println("[SCHEDULER] Encontrados " + staleAgents.size() + " agentes inativos. Marcando como 'offline'.");
+        heartbeatWaiters.wakeAll(target);
+    }
 
-        for (AgentEntity agent : staleAgents) {
-            System.out.println("[SCHEDULER] - Host: " + agent.getHostname() + ", Último Heartbeat: " + agent.getLastHeartbeat());
-            agent.setStatus("offline");
+    /**
+     * Um único tick sobe o limite dos rollouts em andamento; cada onda só
+     * acorda quem está conectado e passou a ter o comando disponível.
+     */
+    @Scheduled(fixedDelayString = "${agent.commands.rollout.tick-ms:1000}")
+    public void releaseRolloutWaves() {
+        for (BroadcastLog.WaveRelease wave : broadcastLog.releaseDueWaves(commandTracker::awaitingAck)) {
+            System.out.println("[ROLLOUT] Comando " + wave.command().sequence() + " liberado para "
+                + wave.releasedPermyriad() / 100 + "% de " + (wave.group() != null ? "grupo " + wave.group() : "todos os hosts"));
+            notifyBroadcast(wave.group());
         }
+    }
 
-        agentRepository.saveAll(staleAgents);
+    /**
+     * Consulta a fila compartilhada: acorda os agentes conectados aqui cujo
+     * host ganhou comando em outra instância e avisa os broadcasts copiados.
+     */
+    @Scheduled(fixedDelayString = "${agent.commands.shared.poll-interval-ms:500}")
+    public void pollSharedCommands() {
+        SharedCommandStore.Poll poll = sharedCommands.poll();
+        poll.hosts().forEach(this::wake);
+        poll.broadcasts().stream().map(SharedCommandStore.Adopted::group).distinct().forEach(this::notifyBroadcast);
     }
 
+    /**
+     * Renova o anúncio no anel e, se as instâncias mudaram, troca os agentes
+     * mantidos aqui. Só os agentes que mudaram de dono são tocados.
+     */
+    @Scheduled(fixedDelayString = "${agent.cluster.heartbeat-ms:5000}")
+    public void rebalanceCluster() {
+        if (!clusterMembership.refresh()) {
+            return;
+        }
 
-    private AgentEntity findByHostOrThrow(Long id) {
-        Optional<AgentEntity> agent = agentRepository.findById(id);
-        if(agent.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND,"Agente não encontrado");
+        AgentRegistry.Rebalance rebalance = agentRegistry.rebalance();
+        // Canais de quem saiu são fechados; na reconexão o agente é redirecionado
+        rebalance.released().forEach(agentStreams::disconnect);
+        offlineDetector.untrack(rebalance.released());
+        for (AgentState agent : rebalance.acquired()) {
+            if (agent.isApproved() && !"offline".equals(agent.getStatus())) {
+                offlineDetector.track(agent);
+            }
         }
-        return agent.get();
+        clusterMembership.rebalanced(rebalance.released().size(), rebalance.acquired().size());
+        System.out.println("[CLUSTER] Rebalanceamento: " + rebalance.released().size() + " agentes cedidos, "
+            + rebalance.acquired().size() + " assumidos, " + agentRegistry.size() + " nesta instância.");
+    }
+
+    public void queueCommand(String hostname, String command, Long ttlSeconds) {
+        if (sharedCommands.isEnabled()) {
+            QueuedCommand queued = sharedCommands.offer(hostname, command, commandQueue.expiresAt(ttlSeconds));
+            commandTracker.register(queued, "host:" + hostname, 1);
+        } else {
+            QueuedCommand queued = commandQueue.newCommand(command, ttlSeconds);
+            commandTracker.register(queued, "host:" + hostname, 1);
+            commandQueue.offer(hostname, queued);
+        }
+        wake(hostname);
+    }
+
+    private void wake(String hostname) {
+        // Agente com canal aberto recebe na hora; os demais pegam no próximo heartbeat
+        AgentState streaming = agentStreams.connectedAgent(hostname);
+        if (streaming != null) {
+            flushToStream(streaming);
+            return;
+        }
+        heartbeatWaiters.wake(hostname);
+    }
+
+    public List<CommandDeliveryDto> getCommandDeliveries(int limit) {
+        return commandTracker.recent(Math.clamp(limit, 1, 500));
     }
 
-    public void queueCommand(String hostname, String command) {
-        commandQueue.put(hostname, command);
+    public CommandDeliveryDto getCommandDelivery(long sequence) {
+        CommandDeliveryDto delivery = commandTracker.find(sequence);
+        if (delivery == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Comando não encontrado ou fora da janela de acompanhamento");
+        }
+        return delivery;
     }
 
-    public List<AgentEntity> findAgentsByGroup(String agentGroup) {
-        return agentRepository.findAllByAgentGroup(agentGroup);
+    public List<AgentState> findAgentsByGroup(String agentGroup) {
+        return List.copyOf(agentRegistry.inGroup(agentGroup));
     }
 
     public List<AgentEntity> findAllAgents() {
         return agentRepository.findAll();
     }
-    
-    public String getAndClearCommand(String hostname) {
-        return commandQueue.remove(hostname);
+
+    private static class GroupAccumulator {
+        private final long[] buckets = new long[IntervalHistogram.BUCKETS];
+        private int agents;
+        private int online;
+        private long missedBeats;
+
+        void add(AgentState agent) {
+            agents++;
+            if (!"offline".equals(agent.getStatus())) {
+                online++;
+            }
+            missedBeats += agent.getIntervals().getMissedBeats();
+            agent.getIntervals().addTo(buckets);
+        }
+
+        GroupHeartbeatStatsDto toDto(String group) {
+            return new GroupHeartbeatStatsDto(
+                group,
+                agents,
+                online,
+                IntervalHistogram.percentile(buckets, 0.5),
+                IntervalHistogram.percentile(buckets, 0.99),
+                missedBeats);
+        }
     }
 }
@@ -0,0 +1,334 @@
+package br.edu.satc.backend.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import br.edu.satc.backend.models.AgentEntity;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Estado residente de um agente mantido pelo {@link AgentRegistry}.
+ *
+ * Os campos imutáveis identificam o agente; os voláteis são atualizados no
+ * próprio objeto para que o caminho do heartbeat não precise alocar nem
+ * consultar o banco.
+ */
+@Getter
+public class AgentState {
+    private static final long NO_UDP_POSITION = -1;
+    // Recuo de sequência que só um reinício do agente explica (a ~10 s por datagrama, quase 3 horas)
+    private static final int UDP_RESTART_GAP = 1024;
+    private static final long[] NO_HELD_BROADCASTS = new long[0];
+
+    private final Long id;
+    private final String agentKey;
+    private final String hostname;
+    private final long keyHash;
+    // Posição fixa do agente (0 a 9999) na liberação em ondas dos broadcasts
+    private final int rolloutBucket;
+
+    private volatile String group;
+    // Grupo em que o AgentRegistry indexou o agente; só muda sob o lock
+    @Getter(AccessLevel.NONE)
+    private volatile String indexedGroup;
+    private volatile String status;
+    private volatile boolean approved;
+    private volatile long lastSeenAt;
+    private volatile long lastPersistedAt;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean tracked = new AtomicBoolean();
+
+    // Último datagrama UDP aceito: época do boot nos 16 bits altos, sequência nos 32 baixos
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong udpPosition = new AtomicLong(NO_UDP_POSITION);
+
+    // Última geração do BroadcastLog já entregue a este agente
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong broadcastCursor = new AtomicLong();
+
+    // Gerações em rollout que o cursor passou antes deste agente ser liberado, em ordem crescente
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<long[]> heldBroadcasts = new AtomicReference<>(NO_HELD_BROADCASTS);
+
+    private final IntervalHistogram intervals = new IntervalHistogram();
+
+    // ReentrantLock em vez de synchronized: com threads virtuais o heartbeat
+    // não prende a thread carregadora enquanto espera pelo agente
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Criado no primeiro heartbeat com "acks"; null para agentes sem confirmação
+    @Getter(AccessLevel.NONE)
+    private volatile InFlightCommands inFlight;
+
+    AgentState(AgentEntity entity) {
+        this.id = entity.getId();
+        this.agentKey = entity.getAgentKey();
+        this.hostname = entity.getHostname();
+        this.keyHash = hashKey(entity.getAgentKey());
+        this.rolloutBucket = (int) Math.floorMod(keyHash, (long) Rollout.FULL);
+        if (entity.getLastHeartbeat() != null) {
+            this.lastSeenAt = entity.getLastHeartbeat().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            this.lastPersistedAt = this.lastSeenAt;
+        }
+        restoreBroadcastCursor(entity);
+        refresh(entity);
+    }
+
+    void refresh(AgentEntity entity) {
+        this.group = entity.getAgentGroup();
+        this.status = entity.getStatus();
+        // Qualquer status diferente de "pending" significa que o admin já aprovou
+        this.approved = !"pending".equals(entity.getStatus());
+    }
+
+    /**
+     * Aceita o datagrama UDP apenas se for mais novo que o último, descartando
+     * repetições e pacotes fora de ordem (com wraparound do int).
+     *
+     * O contador recomeça quando o agente reinicia: uma época diferente, um
+     * recuo maior que {@link #UDP_RESTART_GAP} ou uma sequência de volta perto
+     * do zero na mesma época (agentes sem época mandam 0) é tratado como novo
+     * boot e aceito. O datagrama não é autenticado, então isto só protege
+     * contra duplicação e reordenação da rede.
+     */
+    boolean acceptUdpSequence(int epoch, int sequence) {
+        long next = ((long) (epoch & 0xFFFF) << 32) | Integer.toUnsignedLong(sequence);
+        while (true) {
+            long last = udpPosition.get();
+            if (last != NO_UDP_POSITION && (int) (last >>> 32) == (epoch & 0xFFFF)) {
+                int delta = sequence - (int) last;
+                // Contador recomeçado do zero: sequência baixa menor que a última
+                boolean restarted = Integer.compareUnsigned(sequence, UDP_RESTART_GAP) < 0 && delta < 0;
+                if (delta <= 0 && delta >= -UDP_RESTART_GAP && !restarted) {
+                    return false;
+                }
+            }
+            if (udpPosition.compareAndSet(last, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Primeiros 8 bytes do SHA-256 da chave, usados para identificar o agente
+     * no datagrama de heartbeat sem trafegar a chave em claro.
+     */
+    public static long hashKey(String agentKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(agentKey.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 indisponível", ex);
+        }
+    }
+
+    /**
+     * @return true se status ou grupo mudaram
+     */
+    boolean update(String status, String group) {
+        boolean changed = false;
+        // Só troca a referência quando muda, mantendo as strings já residentes
+        if (status != null && !status.equals(this.status)) {
+            this.status = status;
+            changed = true;
+        }
+        if (group != null && !group.equals(this.group)) {
+            this.group = group;
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return true se o agente não estava na roda do {@link OfflineDetector}
+     */
+    boolean startTracking() {
+        return !tracked.get() && tracked.compareAndSet(false, true);
+    }
+
+    void stopTracking() {
+        tracked.set(false);
+    }
+
+    String getIndexedGroup() {
+        return indexedGroup;
+    }
+
+    void setIndexedGroup(String indexedGroup) {
+        this.indexedGroup = indexedGroup;
+    }
+
+    public long getBroadcastCursor() {
+        return broadcastCursor.get();
+    }
+
+    boolean advanceBroadcastCursor(long expected, long generation) {
+        return broadcastCursor.compareAndSet(expected, generation);
+    }
+
+    /**
+     * Agentes recém-aprovados começam na geração atual e não recebem
+     * broadcasts emitidos antes de existirem.
+     */
+    void resetBroadcastCursor(long generation) {
+        broadcastCursor.set(generation);
+        heldBroadcasts.set(NO_HELD_BROADCASTS);
+    }
+
+    /**
+     * Volta ao cursor e às retidas gravados pelo {@link HeartbeatBuffer}.
+     */
+    void restoreBroadcastCursor(AgentEntity entity) {
+        if (entity.getBroadcastCursor() != null) {
+            broadcastCursor.set(entity.getBroadcastCursor());
+        }
+        heldBroadcasts.set(parseHeldBroadcasts(entity.getBroadcastHeld()));
+    }
+
+    public long[] getHeldBroadcasts() {
+        return heldBroadcasts.get();
+    }
+
+    /**
+     * Guarda as gerações em rollout que o cursor acabou de passar sem que
+     * este agente estivesse liberado; o {@link BroadcastLog} as entrega depois.
+     */
+    void holdBroadcasts(Collection<Long> generations) {
+        if (generations.isEmpty()) {
+            return;
+        }
+        heldBroadcasts.updateAndGet(current -> {
+            long[] next = Arrays.copyOf(current, current.length + generations.size());
+            int size = current.length;
+            for (long generation : generations) {
+                next[size++] = generation;
+            }
+            Arrays.sort(next);
+            return next;
+        });
+    }
+
+    /**
+     * @return true se esta chamada tirou a geração das retidas; só quem tira
+     *         entrega, então heartbeats concorrentes não duplicam o comando
+     */
+    boolean releaseHeldBroadcast(long generation) {
+        while (true) {
+            long[] current = heldBroadcasts.get();
+            int index = Arrays.binarySearch(current, generation);
+            if (index < 0) {
+                return false;
+            }
+            long[] next = new long[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, next.length - index);
+            if (heldBroadcasts.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // Forma gravada em agents.broadcast_held: gerações separadas por vírgula, null se nenhuma
+    String encodeHeldBroadcasts() {
+        long[] held = heldBroadcasts.get();
+        if (held.length == 0) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        for (long generation : held) {
+            joiner.add(Long.toString(generation));
+        }
+        return joiner.toString();
+    }
+
+    private static long[] parseHeldBroadcasts(String encoded) {
+        if (encoded == null || encoded.isBlank()) {
+            return NO_HELD_BROADCASTS;
+        }
+        return Arrays.stream(encoded.split(",")).mapToLong(Long::parseLong).sorted().toArray();
+    }
+
+    InFlightCommands getInFlight() {
+        return inFlight;
+    }
+
+    InFlightCommands enableAcks() {
+        InFlightCommands current = inFlight;
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (inFlight == null) {
+                inFlight = new InFlightCommands();
+            }
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Status, grupo e horário do heartbeat numa só operação, para que o
+     * {@link OfflineDetector} não marque offline no meio de uma batida.
+     *
+     * @return true se status ou grupo mudaram
+     */
+    boolean heartbeat(String status, String group, long timestamp) {
+        lock.lock();
+        try {
+            boolean changed = update(status, group);
+            this.lastSeenAt = timestamp;
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marca offline só se não houve heartbeat desde {@code seenAt}.
+     */
+    boolean markOffline(long seenAt) {
+        lock.lock();
+        try {
+            if (lastSeenAt != seenAt) {
+                return false;
+            }
+            this.status = "offline";
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lock do agente, usado também pelo {@link AgentRegistry} ao trocar o
+     * agente de grupo no índice.
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    void markPersisted(long timestamp) {
+        this.lastPersistedAt = timestamp;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeenAt == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeenAt), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,126 @@
+package br.edu.satc.backend.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import br.edu.satc.backend.dtos.AgentStreamStatsDto;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Canais SSE abertos pelos agentes para receber comandos por push.
+ *
+ * Enquanto o canal está aberto ele vale como heartbeat: o ping periódico
+ * detecta conexões mortas e renova o "lastHeartbeat" dos agentes conectados,
+ * então eles não precisam mais fazer POST em /heartbeat.
+ *
+ * Sem heartbeat, as confirmações dos comandos recebidos por aqui vão para
+ * POST /stream/ack; quem nunca confirma fica fora do acompanhamento de entrega.
+ */
+@Component
+@RequiredArgsConstructor
+public class AgentStreams {
+    private final HeartbeatBuffer heartbeatBuffer;
+    private final OfflineDetector offlineDetector;
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Value("${agent.stream.timeout-ms:0}")
+    private long timeoutMs;
+
+    public SseEmitter open(AgentState agent) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Stream stream = new Stream(agent, emitter);
+
+        emitter.onCompletion(() -> streams.remove(agent.getHostname(), stream));
+        emitter.onTimeout(() -> streams.remove(agent.getHostname(), stream));
+        emitter.onError(error -> streams.remove(agent.getHostname(), stream));
+
+        Stream previous = streams.put(agent.getHostname(), stream);
+        if (previous != null) {
+            previous.emitter().complete();
+        }
+        opened.increment();
+        return emitter;
+    }
+
+    public AgentState connectedAgent(String hostname) {
+        Stream stream = streams.get(hostname);
+        return stream != null ? stream.agent() : null;
+    }
+
+    /**
+     * Fecha o canal do agente, se ainda for dele; o agente reconecta.
+     */
+    public void disconnect(AgentState agent) {
+        Stream stream = streams.get(agent.getHostname());
+        if (stream != null && stream.agent() == agent) {
+            close(stream);
+        }
+    }
+
+    public List<AgentState> connectedAgents() {
+        return streams.values().stream().map(Stream::agent).toList();
+    }
+
+    /**
+     * Envia os comandos pelo canal do host, se houver um aberto.
+     *
+     * @return false quando não há canal ou o envio falhou; o chamador deve
+     *         então enfileirar os comandos para o próximo heartbeat
+     */
+    public boolean push(String hostname, List<QueuedCommand> commands) {
+        Stream stream = streams.get(hostname);
+        if (stream == null) {
+            return false;
+        }
+
+        try {
+            stream.emitter().send(SseEmitter.event().name("command").data(QueuedCommand.toResponse(commands)));
+            pushed.increment();
+            return true;
+        } catch (IOException | IllegalStateException ex) {
+            failed.increment();
+            close(stream);
+            return false;
+        }
+    }
+
+    @Scheduled(fixedRateString = "${agent.stream.ping-interval-ms:30000}")
+    public void ping() {
+        for (Stream stream : streams.values()) {
+            try {
+                stream.emitter().send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException ex) {
+                close(stream);
+                continue;
+            }
+
+            AgentState agent = stream.agent();
+            heartbeatBuffer.heartbeat(agent, "online", agent.getGroup());
+            offlineDetector.track(agent);
+        }
+    }
+
+    public AgentStreamStatsDto stats() {
+        return new AgentStreamStatsDto(streams.size(), opened.sum(), pushed.sum(), failed.sum());
+    }
+
+    private void close(Stream stream) {
+        streams.remove(stream.agent().getHostname(), stream);
+        stream.emitter().complete();
+    }
+
+    private record Stream(AgentState agent, SseEmitter emitter) {}
+}
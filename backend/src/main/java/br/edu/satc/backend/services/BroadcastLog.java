@@ -0,0 +1,357 @@
+package br.edu.satc.backend.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.BroadcastLogStatsDto;
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+import br.edu.satc.backend.infra.journal.CommandJournal;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Comandos de broadcast (todos os hosts ou um grupo) guardados uma única vez.
+ *
+ * Cada escopo mantém as últimas entradas publicadas, versionadas pela
+ * sequência global do {@link CommandQueue} (a "geração"). Cada agente guarda
+ * em {@link AgentState} a última geração que consumiu e, no heartbeat, recebe
+ * as entradas mais novas do escopo geral e do seu grupo. Publicar custa o
+ * mesmo para 10 ou 100 mil agentes.
+ *
+ * Entradas vencidas não são entregues a quem volta depois da validade. Uma
+ * entrada com {@link Rollout} só é entregue aos agentes já liberados: para os
+ * demais o cursor passa por ela mesmo assim e a geração fica retida no
+ * {@link AgentState}, sendo entregue na batida em que a onda chegar ao agente.
+ * Assim um rollout lento não segura os broadcasts seguintes do escopo.
+ */
+@Component
+@RequiredArgsConstructor
+public class BroadcastLog {
+    private static final String ALL = "*";
+
+    private final CommandQueue commandQueue;
+    private final CommandJournal commandJournal;
+
+    private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+    private final List<ActiveRollout> rollouts = new CopyOnWriteArrayList<>();
+    // Entradas com rollout por geração: as retidas continuam entregáveis depois de sair do histórico do escopo
+    private final Map<Long, Broadcast> rolloutEntries = new ConcurrentHashMap<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder waves = new LongAdder();
+
+    // Só avança depois que a entrada está visível no escopo
+    private volatile long latest;
+
+    @Value("${agent.commands.broadcast-history:64}")
+    private int history;
+
+    /**
+     * @param group grupo alvo, ou null para todos os hosts
+     * @param policy liberação em ondas, ou null para todos de uma vez
+     */
+    public QueuedCommand publish(String group, String command, Long ttlSeconds, RolloutPolicyDto policy) {
+        publishLock.lock();
+        try {
+            QueuedCommand queued = commandQueue.newCommand(command, ttlSeconds);
+            commandJournal.broadcast(group, queued, policy);
+            add(group, queued, policy);
+            published.increment();
+            return queued;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Recoloca os broadcasts lidos do journal na subida. Rollouts recomeçam da
+     * primeira onda; quem já recebeu tem o cursor gravado e não recebe de novo.
+     */
+    public void recover(List<CommandJournal.RecoveredBroadcast> recovered) {
+        for (CommandJournal.RecoveredBroadcast broadcast : recovered) {
+            adopt(broadcast.group(), broadcast.command(), broadcast.rollout());
+        }
+    }
+
+    /**
+     * Acrescenta um broadcast já numerado fora daqui (journal ou outra
+     * instância), sem registrá-lo no journal. Deve chegar em ordem de geração.
+     */
+    public void adopt(String group, QueuedCommand command, RolloutPolicyDto policy) {
+        publishLock.lock();
+        try {
+            add(group, command, policy);
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private void add(String group, QueuedCommand command, RolloutPolicyDto policy) {
+        Broadcast broadcast = new Broadcast(command, Rollout.of(policy, System.currentTimeMillis()));
+        scopes.computeIfAbsent(scopeKey(group), key -> new Scope()).append(broadcast, history);
+        if (broadcast.rollout() != null) {
+            rolloutEntries.put(command.sequence(), broadcast);
+            if (!broadcast.rollout().isComplete()) {
+                rollouts.add(new ActiveRollout(group, broadcast));
+            }
+        }
+        latest = Math.max(latest, command.sequence());
+    }
+
+    public long latest() {
+        return latest;
+    }
+
+    public boolean hasPending(AgentState agent) {
+        long cursor = agent.getBroadcastCursor();
+        long target = latest;
+        if (cursor < target) {
+            List<QueuedCommand> commands = new ArrayList<>(2);
+            scan(agent, cursor, target, commands, null);
+            if (!commands.isEmpty()) {
+                return true;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (long sequence : agent.getHeldBroadcasts()) {
+            Broadcast broadcast = rolloutEntries.get(sequence);
+            if (broadcast != null && !broadcast.command().isExpired(now) && broadcast.deliverableTo(agent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retira os broadcasts que o agente ainda não consumiu, em ordem de geração:
+     * os novos do escopo e os retidos cuja onda já chegou a ele. Só quem avança
+     * o cursor (ou tira a geração das retidas) entrega, então heartbeats
+     * concorrentes do mesmo agente não recebem o mesmo comando duas vezes.
+     */
+    public List<QueuedCommand> collect(AgentState agent) {
+        long target = latest;
+        long cursor = agent.getBroadcastCursor();
+        List<QueuedCommand> commands = new ArrayList<>(2);
+        if (cursor < target) {
+            List<Long> held = new ArrayList<>(0);
+            scan(agent, cursor, target, commands, held);
+            if (agent.advanceBroadcastCursor(cursor, target)) {
+                agent.holdBroadcasts(held);
+            } else {
+                commands.clear();
+            }
+        }
+
+        int scanned = commands.size();
+        releaseHeld(agent, commands);
+        if (scanned > 0 && commands.size() > scanned) {
+            commands.sort(Comparator.comparingLong(QueuedCommand::sequence));
+        }
+
+        delivered.add(commands.size());
+        return commands;
+    }
+
+    // Entrega as retidas já liberadas para o agente e esquece as vencidas
+    private void releaseHeld(AgentState agent, List<QueuedCommand> out) {
+        long[] held = agent.getHeldBroadcasts();
+        if (held.length == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (long sequence : held) {
+            Broadcast broadcast = rolloutEntries.get(sequence);
+            if (broadcast == null || broadcast.command().isExpired(now)) {
+                agent.releaseHeldBroadcast(sequence);
+            } else if (broadcast.deliverableTo(agent) && agent.releaseHeldBroadcast(sequence)) {
+                out.add(broadcast.command());
+            }
+        }
+    }
+
+    /**
+     * Sobe o limite das ondas vencidas. Percorre só os broadcasts com rollout
+     * em andamento, nunca os agentes.
+     *
+     * @param inFlight entregues ainda sem confirmação, por comando
+     * @return as ondas liberadas neste tick
+     */
+    public List<WaveRelease> releaseDueWaves(ToLongFunction<QueuedCommand> inFlight) {
+        if (rollouts.isEmpty()) {
+            return List.of();
+        }
+
+        long now = System.currentTimeMillis();
+        List<WaveRelease> released = new ArrayList<>();
+        for (ActiveRollout active : rollouts) {
+            QueuedCommand command = active.broadcast().command();
+            Rollout rollout = active.broadcast().rollout();
+            if (command.isExpired(now)) {
+                rollouts.remove(active);
+                continue;
+            }
+            if (rollout.advance(now, inFlight.applyAsLong(command))) {
+                waves.increment();
+                released.add(new WaveRelease(active.group(), command, rollout.getReleasedPermyriad()));
+            }
+            if (rollout.isComplete()) {
+                rollouts.remove(active);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Remove dos escopos as entradas vencidas; escopos vazios deixam de existir.
+     * No heartbeat as vencidas já são ignoradas, isto só libera memória.
+     */
+    @Scheduled(fixedDelayString = "${agent.commands.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        publishLock.lock();
+        try {
+            for (Map.Entry<String, Scope> entry : scopes.entrySet()) {
+                int removed = entry.getValue().removeExpired(now);
+                expired.add(removed);
+                if (entry.getValue().entries.length == 0) {
+                    scopes.remove(entry.getKey());
+                }
+            }
+            rolloutEntries.values().removeIf(broadcast -> broadcast.command().isExpired(now));
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    public BroadcastLogStatsDto stats() {
+        int entries = 0;
+        for (Scope scope : scopes.values()) {
+            entries += scope.entries.length;
+        }
+        return new BroadcastLogStatsDto(
+            scopes.size(),
+            entries,
+            history,
+            latest,
+            published.sum(),
+            delivered.sum(),
+            expired.sum(),
+            rollouts.size(),
+            waves.sum());
+    }
+
+    /**
+     * Junta as entradas entregáveis do escopo geral e do grupo do agente entre
+     * o cursor e o alvo.
+     *
+     * @param held recebe as gerações em rollout que ainda não liberaram este
+     *             agente, ou null para ignorá-las
+     */
+    private void scan(AgentState agent, long cursor, long target, List<QueuedCommand> out, List<Long> held) {
+        long now = System.currentTimeMillis();
+        Scope all = scopes.get(ALL);
+        Scope group = agent.getGroup() != null ? scopes.get(scopeKey(agent.getGroup())) : null;
+
+        if (all != null) {
+            all.collect(agent, cursor, target, now, out, held);
+        }
+        if (group != null) {
+            int fromAll = out.size();
+            group.collect(agent, cursor, target, now, out, held);
+            if (fromAll > 0 && out.size() > fromAll) {
+                out.sort(Comparator.comparingLong(QueuedCommand::sequence));
+            }
+        }
+    }
+
+    private static String scopeKey(String group) {
+        return group == null ? ALL : "group:" + group;
+    }
+
+    /**
+     * Onda liberada de um broadcast; o chamador acorda os agentes conectados
+     * do escopo que passaram a ter o comando disponível.
+     *
+     * @param group grupo do broadcast, ou null para todos os hosts
+     */
+    public record WaveRelease(String group, QueuedCommand command, int releasedPermyriad) {}
+
+    private record Broadcast(QueuedCommand command, Rollout rollout) {
+        boolean deliverableTo(AgentState agent) {
+            return rollout == null || rollout.releases(agent);
+        }
+    }
+
+    private record ActiveRollout(String group, Broadcast broadcast) {}
+
+    /**
+     * Entradas de um escopo em cópia-na-escrita: a publicação (serializada pelo
+     * publishLock) troca o array e a leitura do heartbeat não trava.
+     */
+    private static class Scope {
+        private volatile Broadcast[] entries = new Broadcast[0];
+
+        void append(Broadcast broadcast, int limit) {
+            Broadcast[] current = entries;
+            int keep = Math.min(current.length, limit - 1);
+            Broadcast[] next = Arrays.copyOfRange(current, current.length - keep, current.length + 1);
+            next[keep] = broadcast;
+            entries = next;
+        }
+
+        int removeExpired(long now) {
+            Broadcast[] current = entries;
+            Broadcast[] alive = Arrays.stream(current)
+                .filter(broadcast -> !broadcast.command().isExpired(now))
+                .toArray(Broadcast[]::new);
+            if (alive.length != current.length) {
+                entries = alive;
+            }
+            return current.length - alive.length;
+        }
+
+        void collect(AgentState agent, long after, long upTo, long now, List<QueuedCommand> out, List<Long> held) {
+            Broadcast[] snapshot = entries;
+            for (int i = start(snapshot, after); i < snapshot.length; i++) {
+                Broadcast broadcast = snapshot[i];
+                QueuedCommand command = broadcast.command();
+                if (command.sequence() > upTo) {
+                    break;
+                }
+                if (command.isExpired(now)) {
+                    continue;
+                }
+                if (broadcast.deliverableTo(agent)) {
+                    out.add(command);
+                } else if (held != null) {
+                    held.add(command.sequence());
+                }
+            }
+        }
+
+        // Entradas em ordem crescente: procura do fim até achar uma já consumida
+        private static int start(Broadcast[] snapshot, long after) {
+            int start = snapshot.length;
+            while (start > 0 && snapshot[start - 1].command().sequence() > after) {
+                start--;
+            }
+            return start;
+        }
+    }
+}
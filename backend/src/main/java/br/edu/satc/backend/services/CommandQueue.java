@@ -0,0 +1,197 @@
+package br.edu.satc.backend.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.CommandQueueStatsDto;
+import br.edu.satc.backend.infra.journal.CommandJournal;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Fila FIFO limitada de comandos por hostname, com número de sequência global.
+ *
+ * Enfileirar usa o compute do ConcurrentHashMap, que trava só o bin do host
+ * (locks distribuídos), e drenar é um único remove da fila inteira; assim o
+ * fan-out de um broadcast e os heartbeats de outros hosts não disputam lock.
+ * Hosts sem comando pendente não ocupam nenhuma entrada.
+ *
+ * Todo comando tem validade (agent.commands.ttl-ms ou o TTL do pedido): os
+ * vencidos são descartados ao drenar e por uma varredura periódica, então um
+ * host desligado não acumula comandos nem recebe um shutdown horas depois.
+ *
+ * Com o {@link CommandJournal} ligado, cada mudança é registrada dentro do
+ * compute do host, então a ordem no arquivo é a mesma das filas.
+ */
+@Component
+@RequiredArgsConstructor
+public class CommandQueue {
+    private final CommandJournal commandJournal;
+
+    private final Map<String, ArrayDeque<QueuedCommand>> queues = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    @Value("${agent.commands.max-per-host:32}")
+    private int maxPerHost;
+
+    @Value("${agent.commands.ttl-ms:900000}")
+    private long ttlMs;
+
+    /**
+     * @param ttlSeconds validade pedida pelo admin, ou null para o padrão
+     */
+    public QueuedCommand newCommand(String command, Long ttlSeconds) {
+        return new QueuedCommand(sequence.incrementAndGet(), command, expiresAt(ttlSeconds));
+    }
+
+    /**
+     * @param ttlSeconds validade pedida pelo admin, ou null para o padrão
+     */
+    public long expiresAt(Long ttlSeconds) {
+        long ttl = ttlSeconds != null ? ttlSeconds * 1000 : ttlMs;
+        return System.currentTimeMillis() + ttl;
+    }
+
+    public void offer(String hostname, QueuedCommand command) {
+        queues.compute(hostname, (host, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>(4);
+            }
+            // Fila cheia: descarta o mais antigo para manter o limite por host
+            if (queue.size() >= maxPerHost) {
+                queue.pollFirst();
+                dropped.increment();
+                pending.decrementAndGet();
+            }
+            queue.addLast(command);
+            commandJournal.offer(host, command);
+            return queue;
+        });
+        enqueued.increment();
+        pending.incrementAndGet();
+    }
+
+    public List<QueuedCommand> drain(String hostname) {
+        // Depois da remoção nenhuma outra thread enxerga esta fila
+        List<ArrayDeque<QueuedCommand>> removed = new ArrayList<>(1);
+        queues.computeIfPresent(hostname, (host, queue) -> {
+            commandJournal.drain(host, queue.peekLast().sequence());
+            removed.add(queue);
+            return null;
+        });
+        if (removed.isEmpty()) {
+            return List.of();
+        }
+
+        ArrayDeque<QueuedCommand> queue = removed.get(0);
+        long now = System.currentTimeMillis();
+        List<QueuedCommand> commands = new ArrayList<>(queue.size());
+        for (QueuedCommand command : queue) {
+            if (command.isExpired(now)) {
+                expired.increment();
+            } else {
+                commands.add(command);
+            }
+        }
+
+        drained.add(commands.size());
+        pending.addAndGet(-queue.size());
+        return commands;
+    }
+
+    /**
+     * Devolve ao início da fila comandos drenados que não chegaram ao agente.
+     */
+    public void restore(String hostname, List<QueuedCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        queues.compute(hostname, (host, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>(commands.size());
+            }
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                queue.addFirst(commands.get(i));
+                commandJournal.offer(host, commands.get(i));
+            }
+            while (queue.size() > maxPerHost) {
+                queue.pollFirst();
+                dropped.increment();
+                pending.decrementAndGet();
+            }
+            return queue;
+        });
+        drained.add(-commands.size());
+        pending.addAndGet(commands.size());
+    }
+
+    /**
+     * Recarrega as filas lidas do journal na subida, sem regravá-las.
+     *
+     * @param sequenceFloor a numeração continua acima disto
+     */
+    public void recover(Map<String, List<QueuedCommand>> recovered, long sequenceFloor) {
+        sequence.accumulateAndGet(sequenceFloor, Math::max);
+        recovered.forEach((hostname, commands) -> {
+            ArrayDeque<QueuedCommand> queue = new ArrayDeque<>(commands);
+            while (queue.size() > maxPerHost) {
+                queue.pollFirst();
+                dropped.increment();
+            }
+            queues.put(hostname, queue);
+            pending.addAndGet(queue.size());
+        });
+    }
+
+    /**
+     * Varredura dos comandos vencidos de hosts que não drenam a fila. Só passa
+     * pelos hosts com algo pendente; cada fila é travada isoladamente.
+     */
+    @Scheduled(fixedDelayString = "${agent.commands.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        for (String hostname : queues.keySet()) {
+            queues.computeIfPresent(hostname, (host, queue) -> {
+                int before = queue.size();
+                queue.removeIf(command -> command.isExpired(now));
+                int removed = before - queue.size();
+                if (removed > 0) {
+                    expired.add(removed);
+                    pending.addAndGet(-removed);
+                }
+                return queue.isEmpty() ? null : queue;
+            });
+        }
+    }
+
+    public boolean hasPending(String hostname) {
+        return queues.containsKey(hostname);
+    }
+
+    public CommandQueueStatsDto stats() {
+        return new CommandQueueStatsDto(
+            queues.size(),
+            pending.get(),
+            maxPerHost,
+            ttlMs,
+            enqueued.sum(),
+            drained.sum(),
+            dropped.sum(),
+            expired.sum());
+    }
+}
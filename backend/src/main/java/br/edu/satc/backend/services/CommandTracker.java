@@ -0,0 +1,190 @@
+package br.edu.satc.backend.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.CommandDeliveryDto;
+
+/**
+ * Confirmação de entrega dos comandos.
+ *
+ * Por comando guarda apenas contadores (entregues, confirmados, reentregues),
+ * nunca uma linha por host, e só os últimos agent.commands.ack.tracked-commands
+ * comandos. O que está pendente de confirmação fica no {@link InFlightCommands}
+ * de cada agente, limitado ao tamanho da fila por host.
+ *
+ * Agentes que não mandam "acks" no heartbeat continuam no modelo antigo:
+ * o comando é considerado entregue quando sai na resposta.
+ */
+@Component
+public class CommandTracker {
+    private final ConcurrentSkipListMap<Long, Delivery> deliveries = new ConcurrentSkipListMap<>();
+
+    @Value("${agent.commands.ack.redelivery-timeout-ms:30000}")
+    private long redeliveryTimeoutMs;
+
+    @Value("${agent.commands.ack.max-deliveries:5}")
+    private int maxDeliveries;
+
+    @Value("${agent.commands.ack.tracked-commands:1024}")
+    private int trackedCommands;
+
+    @Value("${agent.commands.max-per-host:32}")
+    private int maxPerHost;
+
+    /**
+     * @param target descrição do alvo ("host:x", "group:x" ou "all")
+     * @param targets quantos agentes aprovados o comando deve alcançar
+     */
+    public void register(QueuedCommand command, String target, int targets) {
+        deliveries.put(command.sequence(), new Delivery(command, target, targets, LocalDateTime.now()));
+        while (deliveries.size() > trackedCommands) {
+            deliveries.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Registra a saída dos comandos novos e acrescenta os que venceram o prazo
+     * de confirmação.
+     *
+     * @return o que deve ir na resposta ao agente, em ordem de sequência
+     */
+    public List<QueuedCommand> deliver(AgentState agent, List<QueuedCommand> fresh) {
+        fresh.forEach(command -> count(command, delivery -> delivery.delivered.increment()));
+
+        InFlightCommands inFlight = agent.getInFlight();
+        if (inFlight == null || (fresh.isEmpty() && inFlight.isEmpty())) {
+            return fresh;
+        }
+        fresh.forEach(command -> count(command, delivery -> delivery.awaiting.increment()));
+
+        long now = System.currentTimeMillis();
+        List<QueuedCommand> dropped = new ArrayList<>(0);
+        List<QueuedCommand> redeliver = inFlight.due(now, redeliveryTimeoutMs, maxDeliveries, dropped);
+        inFlight.track(fresh, now, maxPerHost, dropped);
+
+        dropped.forEach(command -> count(command, delivery -> {
+            delivery.abandoned.increment();
+            delivery.awaiting.decrement();
+        }));
+        if (redeliver.isEmpty()) {
+            return fresh;
+        }
+
+        redeliver.forEach(command -> count(command, delivery -> delivery.redelivered.increment()));
+        List<QueuedCommand> commands = new ArrayList<>(redeliver.size() + fresh.size());
+        commands.addAll(redeliver);
+        commands.addAll(fresh);
+        commands.sort(Comparator.comparingLong(QueuedCommand::sequence));
+        return commands;
+    }
+
+    /**
+     * @param acks sequências confirmadas no heartbeat; null para agentes antigos
+     */
+    public void acknowledge(AgentState agent, List<Long> acks) {
+        if (acks == null) {
+            return;
+        }
+
+        InFlightCommands inFlight = agent.enableAcks();
+        if (acks.isEmpty() || inFlight.isEmpty()) {
+            return;
+        }
+        for (Long sequence : inFlight.ack(new HashSet<>(acks))) {
+            Delivery delivery = deliveries.get(sequence);
+            if (delivery != null) {
+                delivery.acked.increment();
+                delivery.awaiting.decrement();
+            }
+        }
+    }
+
+    /**
+     * A resposta não chegou ao agente.
+     *
+     * @return comandos que o chamador deve devolver à fila do host; vazio para
+     *         agentes com confirmação, que recebem de novo pela reentrega
+     */
+    public List<QueuedCommand> undelivered(AgentState agent, List<QueuedCommand> commands) {
+        InFlightCommands inFlight = agent.getInFlight();
+        if (inFlight != null) {
+            inFlight.expedite(commands);
+            return List.of();
+        }
+
+        commands.forEach(command -> count(command, delivery -> delivery.delivered.decrement()));
+        return commands;
+    }
+
+    /**
+     * Entregues a agentes com confirmação que ainda não confirmaram; é o que
+     * segura a próxima onda de um rollout com maxInFlight.
+     */
+    public long awaitingAck(QueuedCommand command) {
+        Delivery delivery = deliveries.get(command.sequence());
+        return delivery != null ? delivery.awaiting.sum() : 0;
+    }
+
+    public CommandDeliveryDto find(long sequence) {
+        Delivery delivery = deliveries.get(sequence);
+        return delivery != null ? delivery.toDto() : null;
+    }
+
+    public List<CommandDeliveryDto> recent(int limit) {
+        return deliveries.descendingMap().values().stream().limit(limit).map(Delivery::toDto).toList();
+    }
+
+    private void count(QueuedCommand command, Consumer<Delivery> counter) {
+        Delivery delivery = deliveries.get(command.sequence());
+        if (delivery != null) {
+            counter.accept(delivery);
+        }
+    }
+
+    private static class Delivery {
+        private final QueuedCommand command;
+        private final String target;
+        private final int targets;
+        private final LocalDateTime createdAt;
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder redelivered = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+        private final LongAdder awaiting = new LongAdder();
+
+        Delivery(QueuedCommand command, String target, int targets, LocalDateTime createdAt) {
+            this.command = command;
+            this.target = target;
+            this.targets = targets;
+            this.createdAt = createdAt;
+        }
+
+        CommandDeliveryDto toDto() {
+            long ackedCount = acked.sum();
+            return new CommandDeliveryDto(
+                command.sequence(),
+                command.command(),
+                target,
+                targets,
+                delivered.sum(),
+                ackedCount,
+                redelivered.sum(),
+                abandoned.sum(),
+                ackedCount + "/" + targets + " hosts confirmaram",
+                createdAt,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(command.expiresAt()), ZoneId.systemDefault()));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package br.edu.satc.backend.services;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.HeartbeatBufferStatsDto;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Buffer write-behind dos heartbeats.
+ *
+ * Cada heartbeat apenas substitui a entrada do agente no mapa (coalescendo os
+ * batimentos recebidos entre dois flushes) e o flush periódico grava tudo num
+ * único UPDATE em lote. A janela de durabilidade é o intervalo de flush: numa
+ * queda do processo perde-se no máximo esse intervalo de "lastHeartbeat".
+ *
+ * Heartbeats que não mudam nada além do horário ficam só no {@link AgentState};
+ * a linha é regravada quando status ou grupo mudam, ou quando o lastHeartbeat
+ * gravado passa de agent.heartbeat.persist-staleness-ms.
+ */
+@Component
+@RequiredArgsConstructor
+public class HeartbeatBuffer {
+    private static final String UPDATE_SQL =
+        "UPDATE agents SET status = ?, agent_group = ?, last_heartbeat = ?, broadcast_cursor = ?, broadcast_held = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, PendingHeartbeat> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    private volatile long lastFlushRows;
+    private volatile long lastFlushDurationMs;
+    private volatile long lastFlushLagMs;
+    private volatile long maxFlushLagMs;
+
+    @Value("${agent.heartbeat.buffer.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${agent.heartbeat.buffer.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${agent.heartbeat.persist-staleness-ms:60000}")
+    private long persistStalenessMs;
+
+    public void heartbeat(AgentState agent, String status, String group) {
+        long now = System.currentTimeMillis();
+        received.increment();
+        boolean changed = agent.heartbeat(status, group, now);
+
+        if (!changed && now - agent.getLastPersistedAt() < persistStalenessMs) {
+            suppressed.increment();
+            return;
+        }
+
+        agent.markPersisted(now);
+        record(agent);
+    }
+
+    /**
+     * O agente consumiu broadcasts: grava o cursor e as entradas retidas para
+     * que, depois de um restart com o journal ligado, ele não receba os mesmos
+     * comandos de novo nem perca os rollouts que ainda não o liberaram.
+     */
+    public void persistCursor(AgentState agent) {
+        agent.markPersisted(System.currentTimeMillis());
+        record(agent);
+    }
+
+    /**
+     * Regrava o estado atual do agente; usado quando um heartbeat chega
+     * enquanto o {@link OfflineDetector} gravava o agente como offline.
+     */
+    public void persistState(AgentState agent) {
+        agent.markPersisted(System.currentTimeMillis());
+        record(agent);
+    }
+
+    private void record(AgentState agent) {
+        recorded.increment();
+        long now = System.nanoTime();
+        String status = agent.getStatus();
+        String group = agent.getGroup();
+        LocalDateTime heartbeatAt = agent.getLastSeen();
+        long cursor = agent.getBroadcastCursor();
+        String held = agent.encodeHeldBroadcasts();
+
+        pending.compute(agent.getId(), (id, previous) -> {
+            if (previous != null) {
+                coalesced.increment();
+                return new PendingHeartbeat(id, status, group, heartbeatAt, cursor, held, previous.bufferedAt());
+            }
+            return new PendingHeartbeat(id, status, group, heartbeatAt, cursor, held, now);
+        });
+
+        if (pending.size() >= maxPending) {
+            drainFull();
+        }
+    }
+
+    /**
+     * Buffer cheio: o chamador espera o flush em andamento, ou faz ele mesmo,
+     * antes de seguir. Com o banco lento os heartbeats ficam mais lentos em vez
+     * de o buffer crescer; o limite só é ultrapassado pelas gravações que já
+     * estavam entrando junto com esta.
+     */
+    private void drainFull() {
+        backpressureWaits.increment();
+        flushLock.lock();
+        try {
+            if (pending.size() >= maxPending) {
+                writePending();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.heartbeat.buffer.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty() || !flushLock.tryLock()) {
+            return;
+        }
+
+        try {
+            writePending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            writePending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writePending() {
+        List<PendingHeartbeat> batch = new ArrayList<>(pending.size());
+        long oldest = Long.MAX_VALUE;
+        for (Long agentId : pending.keySet()) {
+            PendingHeartbeat heartbeat = pending.remove(agentId);
+            if (heartbeat != null) {
+                batch.add(heartbeat);
+                oldest = Math.min(oldest, heartbeat.bufferedAt());
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    PendingHeartbeat heartbeat = batch.get(i);
+                    ps.setString(1, heartbeat.status());
+                    ps.setString(2, heartbeat.group());
+                    ps.setTimestamp(3, Timestamp.valueOf(heartbeat.heartbeatAt()));
+                    ps.setLong(4, heartbeat.broadcastCursor());
+                    ps.setString(5, heartbeat.broadcastHeld());
+                    ps.setLong(6, heartbeat.agentId());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+        } catch (RuntimeException ex) {
+            // Devolve ao buffer o que não foi sobrescrito por um heartbeat mais novo
+            for (PendingHeartbeat heartbeat : batch) {
+                pending.putIfAbsent(heartbeat.agentId(), heartbeat);
+            }
+            failedFlushes.increment();
+            System.out.println("[HEARTBEAT] Falha ao gravar lote de " + batch.size() + " heartbeats: " + ex.getMessage());
+            return;
+        }
+
+        long end = System.nanoTime();
+        long lagMs = (end - oldest) / 1_000_000;
+
+        flushes.increment();
+        flushedRows.add(batch.size());
+        lastFlushRows = batch.size();
+        lastFlushDurationMs = (end - start) / 1_000_000;
+        lastFlushLagMs = lagMs;
+        maxFlushLagMs = Math.max(maxFlushLagMs, lagMs);
+    }
+
+    public HeartbeatBufferStatsDto stats() {
+        long durationMs = lastFlushDurationMs;
+        long heartbeats = received.sum();
+        long skipped = suppressed.sum();
+        return new HeartbeatBufferStatsDto(
+            pending.size(),
+            maxPending,
+            flushIntervalMs,
+            heartbeats,
+            recorded.sum(),
+            skipped,
+            heartbeats > 0 ? (double) skipped / heartbeats : 0,
+            coalesced.sum(),
+            flushes.sum(),
+            failedFlushes.sum(),
+            backpressureWaits.sum(),
+            flushedRows.sum(),
+            lastFlushRows,
+            lastFlushDurationMs,
+            durationMs > 0 ? lastFlushRows * 1000 / durationMs : lastFlushRows,
+            lastFlushLagMs,
+            maxFlushLagMs
+        );
+    }
+
+    private record PendingHeartbeat(
+        Long agentId,
+        String status,
+        String group,
+        LocalDateTime heartbeatAt,
+        long broadcastCursor,
+        String broadcastHeld,
+        long bufferedAt
+    ) {}
+}
@@ -0,0 +1,105 @@
+package br.edu.satc.backend.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import br.edu.satc.backend.dtos.HeartbeatResponseDto;
+import br.edu.satc.backend.dtos.LongPollStatsDto;
+
+/**
+ * Heartbeats em long-poll estacionados à espera de comando, um por hostname.
+ *
+ * As requisições ficam como {@link DeferredResult} (servlet assíncrono), então
+ * nenhuma thread fica presa enquanto o agente espera; a thread só é usada
+ * quando um comando chega ou o tempo limite expira.
+ */
+@Component
+public class HeartbeatWaiters {
+    private final Map<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    private final LongAdder parked = new LongAdder();
+    private final LongAdder woken = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * @param drain retira os comandos pendentes do host no momento da resposta
+     * @param restore devolve à fila comandos que não puderam ser entregues
+     */
+    public DeferredResult<HeartbeatResponseDto> park(AgentState agent, long timeoutMs,
+            Supplier<List<QueuedCommand>> drain, Consumer<List<QueuedCommand>> restore) {
+        String hostname = agent.getHostname();
+        DeferredResult<HeartbeatResponseDto> result = new DeferredResult<>(timeoutMs);
+        Waiter waiter = new Waiter(agent, result, drain, restore, new AtomicBoolean());
+
+        result.onTimeout(() -> {
+            waiters.remove(hostname, waiter);
+            if (waiter.claim()) {
+                timedOut.increment();
+                List<QueuedCommand> commands = drain.get();
+                if (!result.setResult(QueuedCommand.toResponse(commands))) {
+                    restore.accept(commands);
+                }
+            }
+        });
+        result.onCompletion(() -> waiters.remove(hostname, waiter));
+        result.onError(error -> waiters.remove(hostname, waiter));
+
+        parked.increment();
+        Waiter previous = waiters.put(hostname, waiter);
+        if (previous != null && previous.claim()) {
+            // O agente abriu um novo poll; o antigo é encerrado sem comando
+            previous.result().setResult(QueuedCommand.toResponse(List.of()));
+        }
+        return result;
+    }
+
+    public void wake(String hostname) {
+        Waiter waiter = waiters.remove(hostname);
+        if (waiter == null || !waiter.claim()) {
+            return;
+        }
+
+        List<QueuedCommand> commands = waiter.drain().get();
+        if (waiter.result().setResult(QueuedCommand.toResponse(commands))) {
+            woken.increment();
+        } else {
+            waiter.restore().accept(commands);
+        }
+    }
+
+    /**
+     * Acorda os agentes estacionados que atendem ao filtro, usado por broadcasts.
+     */
+    public void wakeAll(Predicate<AgentState> filter) {
+        for (Waiter waiter : waiters.values()) {
+            if (filter.test(waiter.agent())) {
+                wake(waiter.agent().getHostname());
+            }
+        }
+    }
+
+    public LongPollStatsDto stats() {
+        return new LongPollStatsDto(waiters.size(), parked.sum(), woken.sum(), timedOut.sum());
+    }
+
+    private record Waiter(
+        AgentState agent,
+        DeferredResult<HeartbeatResponseDto> result,
+        Supplier<List<QueuedCommand>> drain,
+        Consumer<List<QueuedCommand>> restore,
+        AtomicBoolean claimed
+    ) {
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
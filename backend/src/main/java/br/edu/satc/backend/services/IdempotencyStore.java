@@ -0,0 +1,175 @@
+package br.edu.satc.backend.services;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.edu.satc.backend.dtos.IdempotencyStatsDto;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Respostas dos comandos administrativos indexadas pelo header Idempotency-Key.
+ *
+ * O painel e as automações repetem o POST quando a resposta demora; com a
+ * mesma chave a repetição recebe a resposta original em vez de enfileirar ou
+ * agendar o comando de novo. Um pedido repetido enquanto o primeiro ainda roda
+ * espera por ele. Falhas não ficam guardadas: a próxima tentativa executa.
+ *
+ * A busca é um acesso ao mapa; as chaves expiram depois de
+ * agent.idempotency.ttl-ms e, passando de agent.idempotency.max-entries, as
+ * mais antigas são descartadas. Do pedido guarda-se só o SHA-256 do JSON.
+ *
+ * As chaves ficam na memória desta instância. Com várias instâncias atrás de
+ * um balanceador (agent.commands.shared / agent.cluster) a repetição que cair
+ * em outra instância executa de novo; para deduplicar, o balanceador deve
+ * manter o mesmo cliente na mesma instância.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyStore {
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Ordem de criação: a cabeça é sempre a entrada mais antiga
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    @Value("${agent.idempotency.ttl-ms:3600000}")
+    private long ttlMs;
+
+    @Value("${agent.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    /**
+     * Executa a ação uma única vez por chave.
+     *
+     * @param scope endpoint chamado; a mesma chave em endpoints diferentes não colide
+     * @param key valor do header, ou null para executar sem deduplicar
+     * @param request corpo do pedido, comparado com o da primeira chamada
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String key, Object request, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 255) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key muito longa");
+        }
+
+        long now = System.currentTimeMillis();
+        Entry created = new Entry(scope + ":" + key, fingerprint(request), now);
+        Entry existing = entries.compute(created.key(), (id, current) ->
+            current == null || current.isExpired(now, ttlMs) ? created : current);
+
+        if (existing != created) {
+            if (!Arrays.equals(existing.fingerprint(), created.fingerprint())) {
+                conflicts.increment();
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key já usada com outro conteúdo");
+            }
+            replayed.increment();
+            return (T) await(existing);
+        }
+
+        order.add(created);
+        evictOverflow();
+        executed.increment();
+        try {
+            T response = action.get();
+            created.response().complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            // Sai também da fila de ordem: senão cada falha deixaria ali uma entrada até o TTL
+            entries.remove(created.key(), created);
+            order.remove(created);
+            created.response().completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.idempotency.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        Entry head;
+        while ((head = order.peek()) != null && head.isExpired(now, ttlMs)) {
+            if (order.remove(head)) {
+                entries.remove(head.key(), head);
+            }
+        }
+    }
+
+    public IdempotencyStatsDto stats() {
+        return new IdempotencyStatsDto(
+            entries.size(),
+            maxEntries,
+            ttlMs,
+            executed.sum(),
+            replayed.sum(),
+            conflicts.sum(),
+            evicted.sum());
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > maxEntries) {
+            Entry oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.remove(oldest.key(), oldest)) {
+                evicted.increment();
+            }
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Pedido não serializável para Idempotency-Key", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 indisponível", ex);
+        }
+    }
+
+    private static Object await(Entry entry) {
+        try {
+            return entry.response().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private record Entry(String key, byte[] fingerprint, long createdAt, CompletableFuture<Object> response) {
+        Entry(String key, byte[] fingerprint, long createdAt) {
+            this(key, fingerprint, createdAt, new CompletableFuture<>());
+        }
+
+        boolean isExpired(long now, long ttlMs) {
+            return now - createdAt >= ttlMs;
+        }
+    }
+}
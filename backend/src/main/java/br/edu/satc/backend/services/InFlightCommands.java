@@ -0,0 +1,122 @@
+package br.edu.satc.backend.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Comandos entregues a um agente que ainda não foram confirmados.
+ *
+ * Só existe para agentes que mandam "acks" no heartbeat e fica limitado ao
+ * tamanho da fila por host, então o rastreamento não cresce com o número de
+ * comandos emitidos. Cada agente tem a sua instância; o lock é só dele.
+ */
+class InFlightCommands {
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>(4);
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param dropped recebe os comandos descartados por exceder o limite
+     */
+    void track(List<QueuedCommand> commands, long now, int limit, List<QueuedCommand> dropped) {
+        lock.lock();
+        try {
+            for (QueuedCommand command : commands) {
+                if (entries.size() >= limit) {
+                    dropped.add(entries.pollFirst().command);
+                }
+                entries.addLast(new Entry(command, now));
+            }
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sequências que estavam de fato pendentes; confirmações repetidas
+     *         ou desconhecidas são ignoradas
+     */
+    List<Long> ack(Collection<Long> sequences) {
+        lock.lock();
+        try {
+            List<Long> acked = new ArrayList<>(sequences.size());
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+                Entry entry = it.next();
+                if (sequences.contains(entry.command.sequence())) {
+                    acked.add(entry.command.sequence());
+                    it.remove();
+                }
+            }
+            size = entries.size();
+            return acked;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira os comandos cujo prazo de confirmação venceu para reentrega;
+     * os que já esgotaram as tentativas ou a validade vão para "abandoned".
+     */
+    List<QueuedCommand> due(long now, long timeoutMs, int maxDeliveries, List<QueuedCommand> abandoned) {
+        lock.lock();
+        try {
+            List<QueuedCommand> redeliver = new ArrayList<>(0);
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+                Entry entry = it.next();
+                if (now - entry.deliveredAt < timeoutMs) {
+                    continue;
+                }
+                if (entry.deliveries >= maxDeliveries || entry.command.isExpired(now)) {
+                    abandoned.add(entry.command);
+                    it.remove();
+                    continue;
+                }
+                entry.deliveredAt = now;
+                entry.deliveries++;
+                redeliver.add(entry.command);
+            }
+            size = entries.size();
+            return redeliver;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A resposta não chegou ao agente: os comandos voltam a vencer já no
+     * próximo heartbeat em vez de esperar o prazo inteiro.
+     */
+    void expedite(List<QueuedCommand> commands) {
+        lock.lock();
+        try {
+            for (Entry entry : entries) {
+                if (commands.contains(entry.command)) {
+                    entry.deliveredAt = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Entry {
+        private final QueuedCommand command;
+        private long deliveredAt;
+        private int deliveries = 1;
+
+        Entry(QueuedCommand command, long deliveredAt) {
+            this.command = command;
+            this.deliveredAt = deliveredAt;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package br.edu.satc.backend.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Histograma log-linear, de tamanho fixo, dos intervalos entre heartbeats.
+ *
+ * O balde 0 guarda intervalos abaixo de 256 ms; de 2^8 a 2^23 ms cada potência
+ * de dois é dividida em 4 baldes (erro máximo de 25%) e o último balde recebe
+ * o que passar disso. São 62 contadores int (~340 bytes por agente com os
+ * cabeçalhos, ~34 MB para 100 mil agentes). Registrar um intervalo não aloca:
+ * quando a contagem chega a {@link #DECAY_THRESHOLD} todos os baldes são
+ * divididos por dois, fazendo o histograma refletir o comportamento recente.
+ */
+public class IntervalHistogram {
+    public static final int BUCKETS = 62;
+    private static final int MIN_EXPONENT = 8;
+    private static final int MAX_EXPONENT = 22;
+    private static final int SUB_BUCKETS = 4;
+    private static final int DECAY_THRESHOLD = 1 << 12;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+    private final AtomicLong missedBeats = new AtomicLong();
+    private final AtomicInteger total = new AtomicInteger();
+    private volatile long lastBeatAt;
+
+    /**
+     * Registra um heartbeat. O primeiro batimento só marca o horário, para não
+     * contar como intervalo o tempo em que o backend esteve fora do ar.
+     */
+    public void beat(long now, long expectedIntervalMs) {
+        long previous = lastBeatAt;
+        lastBeatAt = now;
+        if (previous == 0 || now <= previous) {
+            return;
+        }
+
+        long interval = now - previous;
+        record(interval);
+
+        // Acima de 1,5 intervalo esperado conta os batimentos que faltaram
+        if (interval * 2 > expectedIntervalMs * 3) {
+            missedBeats.addAndGet((interval + expectedIntervalMs / 2) / expectedIntervalMs - 1);
+        }
+    }
+
+    /**
+     * Contato fora da cadência (long-poll, abertura de SSE): o próximo
+     * {@link #beat} só marca o horário, sem medir o intervalo até ele.
+     */
+    public void pause() {
+        lastBeatAt = 0;
+    }
+
+    private void record(long durationMs) {
+        counts.incrementAndGet(indexOf(Math.max(0, durationMs)));
+        // Só quem atinge o limite divide, então batidas concorrentes não dividem duas vezes
+        if (total.incrementAndGet() == DECAY_THRESHOLD) {
+            decay();
+        }
+    }
+
+    public long getMissedBeats() {
+        return missedBeats.get();
+    }
+
+    /**
+     * Soma os baldes deste histograma em {@code target}, para agregações por grupo.
+     */
+    public void addTo(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    public Long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        addTo(snapshot);
+        return percentile(snapshot, quantile);
+    }
+
+    /**
+     * @return limite superior do balde que contém o quantil, ou null sem amostras
+     */
+    public static Long percentile(long[] buckets, double quantile) {
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    static int indexOf(long interval) {
+        if (interval < (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(interval);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (interval >> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index == 0) {
+            return 1L << MIN_EXPONENT;
+        }
+        if (index >= BUCKETS - 1) {
+            return 1L << (MAX_EXPONENT + 1);
+        }
+        int exponent = MIN_EXPONENT + (index - 1) / SUB_BUCKETS;
+        int sub = (index - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - 2));
+    }
+
+    private void decay() {
+        int remaining = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            int halved = counts.get(i) >> 1;
+            counts.set(i, halved);
+            remaining += halved;
+        }
+        total.set(remaining);
+    }
+}
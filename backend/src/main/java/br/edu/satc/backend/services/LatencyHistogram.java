@@ -0,0 +1,74 @@
+package br.edu.satc.backend.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma cumulativo do atraso dos agendamentos, com resolução de
+ * milissegundo.
+ *
+ * Até {@link #LINEAR_LIMIT} ms cada milissegundo tem o seu balde; acima disso
+ * cada potência de dois é dividida em {@link #SUB_BUCKETS} baldes (erro máximo
+ * de ~1,6%) até 2^41 ms. Ao contrário do {@link IntervalHistogram}, não há
+ * decaimento: os percentis valem para todos os disparos desde a subida.
+ */
+class LatencyHistogram {
+    private static final int LINEAR_LIMIT = 1 << 10;
+    private static final int LINEAR_EXPONENT = 10;
+    private static final int MAX_EXPONENT = 40;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long durationMs) {
+        counts.incrementAndGet(indexOf(Math.max(0, durationMs)));
+    }
+
+    /**
+     * @return maior valor do balde que contém o quantil (exato abaixo de
+     *         {@link #LINEAR_LIMIT} ms), ou null sem amostras
+     */
+    Long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    static int indexOf(long durationMs) {
+        if (durationMs < LINEAR_LIMIT) {
+            return (int) durationMs;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(durationMs);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (durationMs >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = LINEAR_EXPONENT + (index - LINEAR_LIMIT) / SUB_BUCKETS;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,199 @@
+package br.edu.satc.backend.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import br.edu.satc.backend.dtos.OfflineDetectorStatsDto;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Detector de agentes offline baseado numa timing wheel.
+ *
+ * Cada agente online fica num balde da roda correspondente ao seu prazo
+ * (último heartbeat + timeout). O heartbeat só atualiza o horário no
+ * {@link AgentState}, sem mexer na roda: quando o balde vence, agentes que
+ * bateram nesse meio tempo são reinseridos no balde do novo prazo e os demais
+ * são marcados offline, com a gravação feita em lote.
+ */
+@Component
+@RequiredArgsConstructor
+public class OfflineDetector {
+    private static final int BATCH_SIZE = 500;
+
+    private final AgentRegistry agentRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final HeartbeatBuffer heartbeatBuffer;
+
+    private final ReentrantLock tickLock = new ReentrantLock();
+    private final LongAdder expired = new LongAdder();
+
+    @Value("${agent.offline.timeout-ms:300000}")
+    private long timeoutMs;
+
+    @Value("${agent.offline.tick-ms:1000}")
+    private long tickMs;
+
+    private Set<AgentState>[] wheel;
+    private int mask;
+    // Último tick processado; escrito só pelo tick, lido também pelo track
+    private volatile long lastTick;
+    private volatile long lastTickDurationMs;
+
+    @PostConstruct
+    public void init() {
+        // A roda cobre mais que um timeout inteiro, então todo prazo cai numa única volta
+        int size = Integer.highestOneBit((int) (timeoutMs / tickMs) + 1) << 1;
+        @SuppressWarnings("unchecked")
+        Set<AgentState>[] buckets = new Set[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = ConcurrentHashMap.newKeySet();
+        }
+        wheel = buckets;
+        mask = size - 1;
+        lastTick = currentTick();
+
+        for (AgentState agent : agentRegistry.all()) {
+            if (agent.isApproved() && !"offline".equals(agent.getStatus())) {
+                track(agent);
+            }
+        }
+    }
+
+    /**
+     * Coloca o agente na roda se ele ainda não estiver nela. É O(1) e, no
+     * caso comum (agente já na roda), apenas uma leitura de flag.
+     *
+     * Um prazo já vencido (agente carregado do banco com heartbeat antigo) vai
+     * para o próximo tick: o balde dele já passou e só seria visto na volta
+     * seguinte da roda.
+     *
+     * Só vigia agentes do registro desta instância: o de outra instância
+     * atendido aqui depois de um redirect é vigiado pelo dono.
+     */
+    public void track(AgentState agent) {
+        if (agentRegistry.peek(agent.getAgentKey()) != agent) {
+            return;
+        }
+        if (agent.startTracking()) {
+            long deadlineTick = Math.max(tickOf(agent.getLastSeenAt() + timeoutMs), lastTick + 1);
+            wheel[(int) (deadlineTick & mask)].add(agent);
+        }
+    }
+
+    /**
+     * Tira da roda os agentes que passaram para outra instância, para que só
+     * o dono os marque offline. Percorre a roda uma vez para o lote inteiro.
+     */
+    public void untrack(Collection<AgentState> agents) {
+        if (agents.isEmpty()) {
+            return;
+        }
+        Set<AgentState> released = new HashSet<>(agents);
+        for (Set<AgentState> bucket : wheel) {
+            bucket.removeAll(released);
+        }
+        released.forEach(AgentState::stopTracking);
+    }
+
+    @Scheduled(fixedRateString = "${agent.offline.tick-ms:1000}")
+    public void tick() {
+        if (!tickLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            long now = currentTick();
+            List<AgentState> offline = new ArrayList<>();
+
+            // Processa também os ticks perdidos se o scheduler atrasou
+            for (long tick = lastTick + 1; tick <= now; tick++) {
+                expireBucket(wheel[(int) (tick & mask)], now, offline);
+            }
+            lastTick = now;
+
+            if (!offline.isEmpty()) {
+                persistOffline(offline);
+            }
+            lastTickDurationMs = System.currentTimeMillis() - start;
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    private void expireBucket(Set<AgentState> bucket, long now, List<AgentState> offline) {
+        for (AgentState agent : bucket) {
+            bucket.remove(agent);
+
+            // Agente removido do registro enquanto estava na roda
+            if (agentRegistry.peek(agent.getAgentKey()) != agent) {
+                agent.stopTracking();
+                continue;
+            }
+
+            long seenAt = agent.getLastSeenAt();
+            long deadlineTick = tickOf(seenAt + timeoutMs);
+            if (deadlineTick > now) {
+                wheel[(int) (deadlineTick & mask)].add(agent);
+                continue;
+            }
+
+            agent.stopTracking();
+            // Heartbeat chegou depois da leitura acima: continua online
+            if (!agent.markOffline(seenAt)) {
+                track(agent);
+                continue;
+            }
+            offline.add(agent);
+        }
+    }
+
+    private void persistOffline(List<AgentState> offline) {
+        System.out.println("[SCHEDULER] " + offline.size() + " agentes inativos marcados como 'offline'.");
+
+        for (int start = 0; start < offline.size(); start += BATCH_SIZE) {
+            List<AgentState> batch = offline.subList(start, Math.min(start + BATCH_SIZE, offline.size()));
+            jdbcTemplate.batchUpdate(
+                "UPDATE agents SET status = 'offline' WHERE id = ?",
+                batch,
+                batch.size(),
+                (ps, agent) -> ps.setLong(1, agent.getId()));
+        }
+        expired.add(offline.size());
+
+        // Quem bateu depois de marcado tem o status novo regravado por cima do 'offline'
+        for (AgentState agent : offline) {
+            if (!"offline".equals(agent.getStatus())) {
+                heartbeatBuffer.persistState(agent);
+            }
+        }
+    }
+
+    public OfflineDetectorStatsDto stats() {
+        int tracked = 0;
+        for (Set<AgentState> bucket : wheel) {
+            tracked += bucket.size();
+        }
+        return new OfflineDetectorStatsDto(tracked, wheel.length, tickMs, timeoutMs, expired.sum(), lastTickDurationMs);
+    }
+
+    private long currentTick() {
+        return tickOf(System.currentTimeMillis());
+    }
+
+    private long tickOf(long timestamp) {
+        return timestamp / tickMs;
+    }
+}
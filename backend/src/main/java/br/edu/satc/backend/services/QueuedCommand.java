@@ -0,0 +1,39 @@
+package br.edu.satc.backend.services;
+
+import java.util.List;
+
+import br.edu.satc.backend.dtos.AgentCommandDto;
+import br.edu.satc.backend.dtos.HeartbeatResponseDto;
+
+public record QueuedCommand(
+    long sequence,
+    String command,
+    long expiresAt
+) {
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    public AgentCommandDto toDto() {
+        return new AgentCommandDto(sequence, command);
+    }
+
+    /**
+     * Monta a resposta do heartbeat. O campo "command" segue com o primeiro
+     * comando (ou "ok") para os agentes que só leem um comando por batida.
+     */
+    public static HeartbeatResponseDto toResponse(List<QueuedCommand> commands) {
+        if (commands.isEmpty()) {
+            return new HeartbeatResponseDto("ok", List.of(), null);
+        }
+        return new HeartbeatResponseDto(commands.get(0).command(), commands.stream().map(QueuedCommand::toDto).toList(), null);
+    }
+
+    /**
+     * Resposta para o heartbeat que chegou numa instância que não é dona do
+     * agente: nada é processado e o agente passa a usar o endereço indicado.
+     */
+    public static HeartbeatResponseDto toRedirect(String ownerUrl) {
+        return new HeartbeatResponseDto("ok", List.of(), ownerUrl);
+    }
+}
@@ -0,0 +1,66 @@
+package br.edu.satc.backend.services;
+
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+
+/**
+ * Liberação em ondas de um broadcast.
+ *
+ * Cada agente cai num balde fixo de 0 a 9999 ({@link AgentState#getRolloutBucket()})
+ * e recebe o comando quando o limite liberado passa do seu balde. Uma onda é
+ * só o aumento desse limite, então o custo não depende de quantos agentes
+ * o broadcast alcança e não há timer por agente.
+ */
+class Rollout {
+    static final int FULL = 10_000;
+
+    private final int wavePermyriad;
+    private final long waveIntervalMs;
+    private final int maxInFlight;
+
+    private volatile int releasedPermyriad;
+    private volatile long nextWaveAt;
+
+    private Rollout(RolloutPolicyDto policy, long now) {
+        this.wavePermyriad = policy.wavePercent() * 100;
+        this.waveIntervalMs = policy.waveIntervalSeconds() * 1000L;
+        this.maxInFlight = policy.maxInFlight() != null ? policy.maxInFlight() : 0;
+        // A primeira onda sai na publicação
+        this.releasedPermyriad = Math.min(wavePermyriad, FULL);
+        this.nextWaveAt = now + waveIntervalMs;
+    }
+
+    static Rollout of(RolloutPolicyDto policy, long now) {
+        return policy != null ? new Rollout(policy, now) : null;
+    }
+
+    boolean releases(AgentState agent) {
+        return agent.getRolloutBucket() < releasedPermyriad;
+    }
+
+    boolean isComplete() {
+        return releasedPermyriad >= FULL;
+    }
+
+    int getReleasedPermyriad() {
+        return releasedPermyriad;
+    }
+
+    /**
+     * Libera a próxima onda se o intervalo passou e os entregues ainda sem
+     * confirmação estão abaixo de maxInFlight. Chamado só pela thread do tick.
+     *
+     * @return true se o limite subiu
+     */
+    boolean advance(long now, long inFlight) {
+        if (isComplete() || now < nextWaveAt) {
+            return false;
+        }
+        if (maxInFlight > 0 && inFlight >= maxInFlight) {
+            return false;
+        }
+
+        releasedPermyriad = Math.min(releasedPermyriad + wavePermyriad, FULL);
+        nextWaveAt = now + waveIntervalMs;
+        return true;
+    }
+}
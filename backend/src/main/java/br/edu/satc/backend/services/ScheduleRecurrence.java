@@ -0,0 +1,88 @@
+package br.edu.satc.backend.services;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.web.server.ResponseStatusException;
+
+import br.edu.satc.backend.dtos.RecurrenceDto;
+
+/**
+ * Regra de repetição normalizada para uma expressão cron de 6 campos e um
+ * fuso. É o que fica gravado no agendamento; a próxima ocorrência é calculada
+ * a partir dela só quando a anterior dispara.
+ */
+record ScheduleRecurrence(String cron, ZoneId zone, CronExpression expression) {
+
+    static ScheduleRecurrence of(RecurrenceDto dto) {
+        String cron;
+        if (dto.cron() != null && !dto.cron().isBlank()) {
+            if (dto.daysOfWeek() != null || dto.time() != null) {
+                throw badRequest("Informe a expressão cron ou os dias e o horário, não ambos.");
+            }
+            cron = dto.cron().trim();
+            // Cron tradicional, sem o campo de segundos
+            if (cron.split("\\s+").length == 5) {
+                cron = "0 " + cron;
+            }
+        } else if (dto.time() != null) {
+            cron = fromWeekdays(dto.daysOfWeek(), dto.time());
+        } else {
+            throw badRequest("A repetição precisa de uma expressão cron ou de um horário.");
+        }
+
+        ZoneId zone;
+        try {
+            zone = dto.zone() == null || dto.zone().isBlank() ? ZoneId.systemDefault() : ZoneId.of(dto.zone());
+        } catch (DateTimeException ex) {
+            throw badRequest("Fuso horário inválido: " + dto.zone());
+        }
+        return parse(cron, zone.getId());
+    }
+
+    /**
+     * Reconstrói a regra gravada no agendamento.
+     */
+    static ScheduleRecurrence parse(String cron, String zone) {
+        try {
+            return new ScheduleRecurrence(cron, ZoneId.of(zone), CronExpression.parse(cron));
+        } catch (IllegalArgumentException ex) {
+            throw badRequest("Expressão cron inválida: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Calculada no horário de parede do fuso da regra, como no cron: um
+     * horário que não existe na entrada do horário de verão dispara logo
+     * depois da mudança (02:30 vira 03:30) e um que se repete na saída
+     * dispara uma vez só.
+     *
+     * @return a primeira ocorrência depois de {@code after}, no horário local do servidor
+     */
+    LocalDateTime nextAfter(LocalDateTime after) {
+        LocalDateTime from = after.atZone(ZoneId.systemDefault()).withZoneSameInstant(zone).toLocalDateTime();
+        LocalDateTime next = expression.next(from);
+        if (next == null) {
+            throw badRequest("A expressão cron não tem próxima ocorrência: " + cron);
+        }
+        return next.atZone(zone).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    private static String fromWeekdays(List<DayOfWeek> days, LocalTime time) {
+        String daysField = days == null || days.isEmpty()
+            ? "*"
+            : days.stream().distinct().map(day -> day.name().substring(0, 3)).collect(Collectors.joining(","));
+        return time.getSecond() + " " + time.getMinute() + " " + time.getHour() + " * * " + daysField;
+    }
+
+    private static ResponseStatusException badRequest(String message) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+}
@@ -0,0 +1,84 @@
+package br.edu.satc.backend.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Move para scheduled_commands_archive os agendamentos executados há mais que
+ * agent.schedules.archive.retention-ms, em lotes de batch-size linhas por
+ * transação. Assim a tabela quente só guarda pendentes, repetições e o
+ * histórico recente.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScheduledCommandArchiver {
+    private static final String COLUMNS = "id, command, target_type, target_value, scheduled_for, next_fire_at, executed, "
+        + "recurrence_cron, recurrence_zone, created_at, rollout_wave_percent, rollout_wave_interval_seconds, "
+        + "rollout_max_in_flight, misfire_policy, misfire_within_seconds, ttl_seconds";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${agent.schedules.archive.retention-ms:604800000}")
+    private long retentionMs;
+
+    @Value("${agent.schedules.archive.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(
+        initialDelayString = "${agent.schedules.archive.interval-ms:3600000}",
+        fixedDelayString = "${agent.schedules.archive.interval-ms:3600000}")
+    public void archiveExecuted() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(retentionMs * 1_000_000);
+        int archived = 0;
+        try {
+            int moved;
+            do {
+                moved = archiveBatch(cutoff);
+                archived += moved;
+            } while (moved == batchSize);
+        } catch (DataAccessException ex) {
+            // Outra instância arquivando o mesmo lote: o que sobrou vai na próxima rodada
+            System.out.println("[SCHEDULER] Falha ao arquivar agendamentos: " + ex.getMessage());
+        }
+
+        if (archived > 0) {
+            System.out.println("[SCHEDULER] " + archived + " agendamentos executados arquivados.");
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<UUID> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM scheduled_commands WHERE executed = TRUE AND next_fire_at < ? ORDER BY next_fire_at LIMIT ?",
+                UUID.class, Timestamp.valueOf(cutoff), batchSize);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            List<Object> args = new ArrayList<>(ids.size() + 1);
+            args.add(Timestamp.valueOf(LocalDateTime.now()));
+            args.addAll(ids);
+            jdbcTemplate.update(
+                "INSERT INTO scheduled_commands_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS
+                    + ", ? FROM scheduled_commands WHERE id IN (" + in + ")",
+                args.toArray());
+            return jdbcTemplate.update("DELETE FROM scheduled_commands WHERE id IN (" + in + ")", ids.toArray());
+        });
+        return moved != null ? moved : 0;
+    }
+}
@@ -1,84 +1,607 @@
 package br.edu.satc.backend.services;
 
+import br.edu.satc.backend.dtos.BulkScheduleResponseDto;
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
 import br.edu.satc.backend.dtos.ScheduleCommandDto;
-import br.edu.satc.backend.dtos.ScheduledCommandResponseDto;
+import br.edu.satc.backend.dtos.ScheduleFireDto;
+import br.edu.satc.backend.dtos.SchedulerStatsDto;
+import br.edu.satc.backend.dtos.ScheduledCommandPageDto;
 import br.edu.satc.backend.mappers.ScheduledCommandMapper;
+import br.edu.satc.backend.models.MisfirePolicy;
 import br.edu.satc.backend.models.ScheduledCommandEntity;
 import br.edu.satc.backend.repositories.ScheduledCommandRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Agendamentos disparados no horário exato.
+ *
+ * Os da próxima janela (agent.schedules.lookahead-ms) ficam numa fila de
+ * prioridade em memória, com um único timer armado para o primeiro. A janela
+ * é recarregada periodicamente por uma consulta de faixa de horário e um
+ * agendamento novo dentro dela entra na fila ao ser salvo.
+ *
+ * Agendamentos com repetição guardam a regra e só a próxima ocorrência
+ * (nextFireAt), avançada a cada disparo.
+ *
+ * Disparo com atraso acima de agent.schedules.misfire-threshold-ms é
+ * considerado perdido e segue a {@link MisfirePolicy} do agendamento.
+ */
 @Service
 @RequiredArgsConstructor
 public class ScheduledCommandService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final List<Boolean> PENDING = List.of(false);
+    private static final int BULK_ROWS_PER_INSERT = 500;
+    private static final int INSERT_COLUMNS = 16;
+    private static final String INSERT_SQL = "INSERT INTO scheduled_commands (id, command, target_type, target_value, "
+        + "scheduled_for, next_fire_at, executed, recurrence_cron, recurrence_zone, created_at, rollout_wave_percent, "
+        + "rollout_wave_interval_seconds, rollout_max_in_flight, misfire_policy, misfire_within_seconds, ttl_seconds) VALUES ";
+    private static final String INSERT_ROW = "(" + String.join(", ", Collections.nCopies(INSERT_COLUMNS, "?")) + ")";
+    private static final LocalDateTime RANGE_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime RANGE_END = LocalDateTime.of(9999, 12, 31, 0, 0);
 
     private final ScheduledCommandRepository scheduledCommandRepository;
     private final AgentService agentService;
     private final ScheduledCommandMapper scheduledCommandMapper;
+    private final TaskScheduler taskScheduler;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+
+    private final PriorityQueue<Upcoming> timeline = new PriorityQueue<>(Comparator.comparingLong(Upcoming::fireAt));
+    private final Set<UUID> queued = new HashSet<>();
+    private final ReentrantLock timelineLock = new ReentrantLock();
+
+    private ScheduledFuture<?> timer;
+    private long timerAt = Long.MAX_VALUE;
+    private volatile long windowEnd;
+
+    @Value("${agent.schedules.lookahead-ms:600000}")
+    private long lookaheadMs;
+
+    // Atraso acima disso é um disparo perdido e segue a política de misfire
+    @Value("${agent.schedules.misfire-threshold-ms:5000}")
+    private long misfireThresholdMs;
+
+    @Value("${agent.schedules.misfire-policy:FIRE_IF_WITHIN}")
+    private MisfirePolicy defaultMisfirePolicy;
+
+    // Janela padrão do FIRE_IF_WITHIN
+    @Value("${agent.schedules.late-tolerance-ms:120000}")
+    private long lateToleranceMs;
+
+    @Value("${agent.schedules.recent-fires:100}")
+    private int recentFireLimit;
+
+    @Value("${agent.schedules.bulk.max-entries:50000}")
+    private int bulkMaxEntries;
+
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+    private final LongAdder firedLate = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Deque<ScheduleFireDto> recentFires = new ArrayDeque<>();
+    private final ReentrantLock recentFiresLock = new ReentrantLock();
 
     public ScheduledCommandEntity scheduleCommand(ScheduleCommandDto dto) {
+        ScheduledCommandEntity saved = scheduledCommandRepository.save(toEntity(dto));
+        enqueue(saved);
+        return saved;
+    }
+
+    public int getBulkMaxEntries() {
+        return bulkMaxEntries;
+    }
+
+    /**
+     * Agenda um lote de uma vez (ex.: calendário do semestre). Tudo é validado
+     * antes de gravar; se algum item for inválido nada é agendado. A gravação
+     * é um INSERT em lote numa única transação e a linha do tempo é
+     * alimentada uma vez só, no fim.
+     */
+    public BulkScheduleResponseDto scheduleCommands(List<ScheduleCommandDto> dtos) {
+        if (dtos == null || dtos.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nenhum agendamento enviado.");
+        }
+        if (dtos.size() > bulkMaxEntries) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Máximo de " + bulkMaxEntries + " agendamentos por lote (recebidos " + dtos.size() + ").");
+        }
+
+        List<ScheduledCommandEntity> tasks = new ArrayList<>(dtos.size());
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            ScheduleCommandDto dto = dtos.get(i);
+            if (dto == null) {
+                errors.add("Item " + i + ": vazio");
+                continue;
+            }
+            Set<ConstraintViolation<ScheduleCommandDto>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                for (ConstraintViolation<ScheduleCommandDto> violation : violations) {
+                    errors.add("Item " + i + ": " + violation.getMessage());
+                }
+                continue;
+            }
+            try {
+                ScheduledCommandEntity task = toEntity(dto);
+                task.setId(UUID.randomUUID());
+                tasks.add(task);
+            } catch (ResponseStatusException ex) {
+                errors.add("Item " + i + ": " + ex.getReason());
+            } catch (IllegalArgumentException ex) {
+                errors.add("Item " + i + ": " + ex.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            String shown = String.join("; ", errors.subList(0, Math.min(errors.size(), MAX_REPORTED_ERRORS)));
+            if (errors.size() > MAX_REPORTED_ERRORS) {
+                shown += "; e mais " + (errors.size() - MAX_REPORTED_ERRORS) + " erros";
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, shown);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < tasks.size(); from += BULK_ROWS_PER_INSERT) {
+                insertRows(tasks.subList(from, Math.min(tasks.size(), from + BULK_ROWS_PER_INSERT)));
+            }
+        });
+
+        enqueueAll(tasks);
+
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (ScheduledCommandEntity task : tasks) {
+            if (first == null || task.getNextFireAt().isBefore(first)) {
+                first = task.getNextFireAt();
+            }
+            if (last == null || task.getNextFireAt().isAfter(last)) {
+                last = task.getNextFireAt();
+            }
+        }
+        System.out.println("[SCHEDULER] " + tasks.size() + " agendamentos criados em lote, de " + first + " a " + last);
+        return new BulkScheduleResponseDto(tasks.size(), first, last);
+    }
+
+    // Um INSERT com várias linhas em VALUES: o H2 executa lotes JDBC comando a comando
+    private void insertRows(List<ScheduledCommandEntity> rows) {
+        String values = String.join(", ", Collections.nCopies(rows.size(), INSERT_ROW));
+        List<Object> args = new ArrayList<>(rows.size() * INSERT_COLUMNS);
+        for (ScheduledCommandEntity task : rows) {
+            args.add(task.getId());
+            args.add(task.getCommand());
+            args.add(task.getTargetType());
+            args.add(task.getTargetValue());
+            args.add(Timestamp.valueOf(task.getScheduledFor()));
+            args.add(Timestamp.valueOf(task.getNextFireAt()));
+            args.add(false);
+            args.add(task.getRecurrenceCron());
+            args.add(task.getRecurrenceZone());
+            args.add(Timestamp.valueOf(task.getCreatedAt()));
+            args.add(task.getRolloutWavePercent());
+            args.add(task.getRolloutWaveIntervalSeconds());
+            args.add(task.getRolloutMaxInFlight());
+            args.add(task.getMisfirePolicy() != null ? task.getMisfirePolicy().name() : null);
+            args.add(task.getMisfireWithinSeconds());
+            args.add(task.getTtlSeconds());
+        }
+        jdbcTemplate.update(INSERT_SQL + values, args.toArray());
+    }
+
+    private ScheduledCommandEntity toEntity(ScheduleCommandDto dto) {
         ScheduledCommandEntity task = new ScheduledCommandEntity();
         task.setScheduledFor(dto.scheduledFor());
 
+        if (dto.recurrence() != null) {
+            ScheduleRecurrence recurrence = ScheduleRecurrence.of(dto.recurrence());
+            LocalDateTime from = dto.scheduledFor() != null ? dto.scheduledFor().minusNanos(1) : LocalDateTime.now();
+            task.setRecurrenceCron(recurrence.cron());
+            task.setRecurrenceZone(recurrence.zone().getId());
+            task.setNextFireAt(recurrence.nextAfter(from));
+            if (task.getScheduledFor() == null) {
+                task.setScheduledFor(task.getNextFireAt());
+            }
+        } else if (dto.scheduledFor() != null) {
+            task.setNextFireAt(dto.scheduledFor());
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Data e hora do comando são obrigatórios");
+        }
+
+        // O rollout pode vir no agendamento ou dentro do comando, como nas rotas de envio imediato
+        RolloutPolicyDto nestedRollout;
         if (dto.allHostsCommand() != null) {
             task.setCommand(dto.allHostsCommand().command());
             task.setTargetType("all");
             task.setTargetValue(null);
+            task.setTtlSeconds(dto.allHostsCommand().ttlSeconds());
+            nestedRollout = dto.allHostsCommand().rollout();
         } else if (dto.groupCommand() != null) {
             task.setCommand(dto.groupCommand().command());
             task.setTargetType("group");
             task.setTargetValue(dto.groupCommand().group());
+            task.setTtlSeconds(dto.groupCommand().ttlSeconds());
+            nestedRollout = dto.groupCommand().rollout();
         } else if (dto.hostCommand() != null) {
             task.setCommand(dto.hostCommand().command());
             task.setTargetType("host");
             task.setTargetValue(dto.hostCommand().hostname());
+            task.setTtlSeconds(dto.hostCommand().ttlSeconds());
+            nestedRollout = null;
         } else {
             throw new IllegalArgumentException("Nenhum comando selecionado para agendamento.");
         }
 
-        return scheduledCommandRepository.save(task);
+        task.setMisfirePolicy(dto.misfirePolicy());
+        task.setMisfireWithinSeconds(dto.misfireWithinSeconds());
+
+        if (dto.rollout() != null && nestedRollout != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Informe o rollout no agendamento ou no comando, não nos dois.");
+        }
+        RolloutPolicyDto rollout = dto.rollout() != null ? dto.rollout() : nestedRollout;
+        if (rollout != null) {
+            if ("host".equals(task.getTargetType())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rollout só vale para os alvos \"all\" e \"group\".");
+            }
+            task.setRolloutWavePercent(rollout.wavePercent());
+            task.setRolloutWaveIntervalSeconds(rollout.waveIntervalSeconds());
+            task.setRolloutMaxInFlight(rollout.maxInFlight());
+        }
+        return task;
     }
 
-    public List<ScheduledCommandResponseDto> getSchedules() {
-        return scheduledCommandRepository.findAll().stream().map(scheduledCommandMapper::toDto).toList();
+    /**
+     * Uma página de agendamentos em ordem de próximo disparo.
+     *
+     * Sem filtros vêm todos os agendamentos, executados ou não. Com
+     * state=pending e sem "from" a listagem começa agora, ou seja, traz só os
+     * próximos a disparar.
+     *
+     * @param state "pending", "executed" ou "all"
+     * @param from início do intervalo; para "pending" sem valor é agora
+     * @param cursor nextCursor da página anterior, ou null para a primeira
+     */
+    public ScheduledCommandPageDto getSchedules(String state, LocalDateTime from, LocalDateTime to, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit deve ser de 1 a " + MAX_PAGE_SIZE);
+        }
+        List<Boolean> states = switch (state) {
+            case "pending" -> List.of(false);
+            case "executed" -> List.of(true);
+            case "all" -> List.of(false, true);
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Estado inválido: " + state);
+        };
+        LocalDateTime rangeFrom = from != null ? from : "pending".equals(state) ? LocalDateTime.now() : RANGE_START;
+        LocalDateTime rangeTo = to != null ? to : RANGE_END;
+
+        // Um a mais só para saber se há próxima página
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<ScheduledCommandEntity> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = scheduledCommandRepository.findPage(states, rangeFrom, rangeTo, page);
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            rows = scheduledCommandRepository.findPageAfter(states, rangeFrom, rangeTo, after.fireAt(), after.id(), page);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            ScheduledCommandEntity last = rows.get(limit - 1);
+            nextCursor = new Cursor(last.getNextFireAt(), last.getId()).encode();
+        }
+        return new ScheduledCommandPageDto(rows.stream().map(scheduledCommandMapper::toDto).toList(), nextCursor);
     }
 
 
-   @Scheduled(fixedRate = 60000)
-    public void executeDueCommands() {
-        LocalDateTime now = LocalDateTime.now();
-        int toleranceMinutes = 2;
+    /**
+     * Carrega na linha do tempo os agendamentos da próxima janela
+     * (agent.schedules.lookahead-ms). A consulta é por faixa de horário no
+     * índice (executed, next_fire_at), então o custo não cresce com os
+     * agendamentos mais distantes; uma repetição ocupa uma linha só, com a
+     * próxima ocorrência.
+     */
+    @Scheduled(fixedDelayString = "${agent.schedules.refill-interval-ms:60000}")
+    public void loadUpcoming() {
+        long now = System.currentTimeMillis();
+        long end = now + lookaheadMs;
+        // Antes da consulta: o que for salvo daqui em diante dentro da janela entra direto
+        windowEnd = end;
 
-        List<ScheduledCommandEntity> dueCommands =
-            scheduledCommandRepository.findByExecutedFalse();
+        // Os que perderam o horário também vêm: saem da tabela de pendentes no
+        // primeiro disparo. Depois de uma parada longa podem ser muitos, então a
+        // leitura é paginada por (next_fire_at, id) em vez de um resultado só
+        LocalDateTime to = toDateTime(end);
+        PageRequest page = PageRequest.of(0, LOAD_PAGE_SIZE);
+        List<ScheduledCommandEntity> rows = scheduledCommandRepository.findPage(PENDING, RANGE_START, to, page);
+        while (!rows.isEmpty()) {
+            enqueueAll(rows);
+            if (rows.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            ScheduledCommandEntity last = rows.get(rows.size() - 1);
+            rows = scheduledCommandRepository.findPageAfter(PENDING, RANGE_START, to, last.getNextFireAt(), last.getId(), page);
+        }
+    }
 
-        for (ScheduledCommandEntity cmd : dueCommands) {
-            // Calcula diferença em minutos entre o horário atual e o agendado
-            long minutesDiff = java.time.Duration.between(cmd.getScheduledFor(), now).toMinutes();
+    /**
+     * Linhas gravadas antes da coluna next_fire_at existir ficam com ela
+     * nula; recebem o scheduled_for antes da primeira carga da linha do tempo.
+     */
+    @PostConstruct
+    public void backfillNextFire() {
+        int filled = jdbcTemplate.update(
+            "UPDATE scheduled_commands SET next_fire_at = scheduled_for WHERE next_fire_at IS NULL");
+        if (filled > 0) {
+            System.out.println("[SCHEDULER] next_fire_at preenchido em " + filled + " agendamentos antigos.");
+        }
+    }
 
-            // Executa apenas se dentro da margem [-tolerance, +tolerance]
-            if (minutesDiff >= -toleranceMinutes && minutesDiff <= toleranceMinutes) {
-                switch (cmd.getTargetType()) {
-                    case "host" -> agentService.queueCommandForHost(
-                        new br.edu.satc.backend.dtos.CommandHostUniqueRequestDto(cmd.getTargetValue(), cmd.getCommand())
-                    );
-                    case "group" -> agentService.queueCommandForGroup(
-                        new br.edu.satc.backend.dtos.CommandGroupHostsRequestDto(cmd.getTargetValue(), cmd.getCommand())
-                    );
-                    case "all" -> agentService.queueCommandForAll(
-                        new br.edu.satc.backend.dtos.CommandAllHostsRequestDto(cmd.getCommand())
-                    );
+    private void enqueue(ScheduledCommandEntity cmd) {
+        enqueueAll(List.of(cmd));
+    }
+
+    private void enqueueAll(List<ScheduledCommandEntity> cmds) {
+        long end = windowEnd;
+        timelineLock.lock();
+        try {
+            for (ScheduledCommandEntity cmd : cmds) {
+                long fireAt = toMillis(cmd.getNextFireAt());
+                if (!cmd.isExecuted() && fireAt <= end && queued.add(cmd.getId())) {
+                    timeline.add(new Upcoming(cmd.getId(), fireAt));
                 }
+            }
+            arm();
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    // Um único timer, sempre no horário do primeiro da fila
+    private void arm() {
+        Upcoming head = timeline.peek();
+        if (head == null || head.fireAt() >= timerAt) {
+            return;
+        }
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        timer = taskScheduler.schedule(this::fireDue, Instant.ofEpochMilli(head.fireAt()));
+        timerAt = head.fireAt();
+    }
+
+    private void fireDue() {
+        List<Upcoming> due = new ArrayList<>();
+        timelineLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            while (!timeline.isEmpty() && timeline.peek().fireAt() <= now) {
+                Upcoming next = timeline.poll();
+                queued.remove(next.id());
+                due.add(next);
+            }
+            timer = null;
+            timerAt = Long.MAX_VALUE;
+            arm();
+        } finally {
+            timelineLock.unlock();
+        }
+
+        for (Upcoming upcoming : due) {
+            execute(upcoming.id());
+        }
+    }
+
+    private void execute(UUID id) {
+        ScheduledCommandEntity cmd = scheduledCommandRepository.findById(id).orElse(null);
+        if (cmd == null || cmd.isExecuted()) {
+            return;
+        }
 
-                cmd.setExecuted(true);
-                scheduledCommandRepository.save(cmd);
+        LocalDateTime fireAt = cmd.getNextFireAt();
+        long lateMs = System.currentTimeMillis() - toMillis(fireAt);
+        if (lateMs < 0) {
+            // Repetição já avançada por outra instância: volta para a fila no novo horário
+            enqueue(cmd);
+            return;
+        }
+        boolean misfired = lateMs > misfireThresholdMs;
+
+        // Marca/avança antes de disparar: com várias instâncias no mesmo banco,
+        // ou depois de um restart, cada ocorrência sai uma vez só
+        if (!claim(cmd, fireAt)) {
+            return;
+        }
+        if (misfired) {
+            missed.increment();
+            if (!firesWhenLate(cmd, lateMs)) {
+                skipped.increment();
+                recordFire(cmd, fireAt, lateMs, "skipped");
+                System.out.println("[SCHEDULER] Comando '" + cmd.getCommand() + "' agendado para " + fireAt
+                    + " perdido (atraso de " + lateMs + " ms, política " + policyOf(cmd) + ").");
+                return;
+            }
+        }
 
-                System.out.println("[SCHEDULER] Executado comando '" + cmd.getCommand() + "' agendado para " + cmd.getScheduledFor());
+        try {
+            switch (cmd.getTargetType()) {
+                case "host" -> agentService.queueCommandForHost(
+                    new br.edu.satc.backend.dtos.CommandHostUniqueRequestDto(cmd.getTargetValue(), cmd.getCommand(), cmd.getTtlSeconds())
+                );
+                case "group" -> agentService.queueCommandForGroup(
+                    new br.edu.satc.backend.dtos.CommandGroupHostsRequestDto(cmd.getTargetValue(), cmd.getCommand(), cmd.getTtlSeconds(), rolloutOf(cmd))
+                );
+                case "all" -> agentService.queueCommandForAll(
+                    new br.edu.satc.backend.dtos.CommandAllHostsRequestDto(cmd.getCommand(), cmd.getTtlSeconds(), rolloutOf(cmd))
+                );
             }
+        } catch (RuntimeException ex) {
+            failed.increment();
+            recordFire(cmd, fireAt, lateMs, "failed");
+            System.out.println("[SCHEDULER] Falha ao executar comando '" + cmd.getCommand() + "' agendado para "
+                + fireAt + ": " + ex.getMessage());
+            return;
+        }
+
+        fired.increment();
+        if (misfired) {
+            firedLate.increment();
         }
+        lag.record(lateMs);
+        maxLagMs.accumulateAndGet(lateMs, Math::max);
+        recordFire(cmd, fireAt, lateMs, misfired ? "late" : "fired");
+        System.out.println("[SCHEDULER] Executado comando '" + cmd.getCommand() + "' agendado para " + fireAt
+            + " (atraso de " + lateMs + " ms)");
+    }
+
+    private MisfirePolicy policyOf(ScheduledCommandEntity cmd) {
+        return cmd.getMisfirePolicy() != null ? cmd.getMisfirePolicy() : defaultMisfirePolicy;
+    }
+
+    private boolean firesWhenLate(ScheduledCommandEntity cmd, long lateMs) {
+        return switch (policyOf(cmd)) {
+            case FIRE_NOW -> true;
+            case SKIP -> false;
+            case FIRE_IF_WITHIN -> lateMs <= (cmd.getMisfireWithinSeconds() != null
+                ? cmd.getMisfireWithinSeconds() * 1000L
+                : lateToleranceMs);
+        };
     }
 
+    private void recordFire(ScheduledCommandEntity cmd, LocalDateTime intendedAt, long lagMs, String outcome) {
+        ScheduleFireDto fire = new ScheduleFireDto(cmd.getId(), cmd.getCommand(), intendedAt, LocalDateTime.now(), lagMs, outcome);
+        recentFiresLock.lock();
+        try {
+            recentFires.addFirst(fire);
+            while (recentFires.size() > recentFireLimit) {
+                recentFires.removeLast();
+            }
+        } finally {
+            recentFiresLock.unlock();
+        }
+    }
+
+    public SchedulerStatsDto stats() {
+        int size;
+        Upcoming head;
+        timelineLock.lock();
+        try {
+            size = timeline.size();
+            head = timeline.peek();
+        } finally {
+            timelineLock.unlock();
+        }
+
+        List<ScheduleFireDto> fires;
+        recentFiresLock.lock();
+        try {
+            fires = List.copyOf(recentFires);
+        } finally {
+            recentFiresLock.unlock();
+        }
+        return new SchedulerStatsDto(
+            size,
+            head != null ? toDateTime(head.fireAt()) : null,
+            misfireThresholdMs,
+            defaultMisfirePolicy.name(),
+            fired.sum(),
+            missed.sum(),
+            firedLate.sum(),
+            skipped.sum(),
+            failed.sum(),
+            lag.percentile(0.5),
+            lag.percentile(0.99),
+            maxLagMs.get(),
+            fires);
+    }
+
+    /**
+     * Agendamento único é marcado como executado; repetição avança para a
+     * próxima ocorrência depois de agora e volta para a fila se cair na janela.
+     */
+    private boolean claim(ScheduledCommandEntity cmd, LocalDateTime fireAt) {
+        if (cmd.getRecurrenceCron() == null) {
+            return scheduledCommandRepository.markExecuted(cmd.getId()) > 0;
+        }
+
+        ScheduleRecurrence recurrence = ScheduleRecurrence.parse(cmd.getRecurrenceCron(), cmd.getRecurrenceZone());
+        LocalDateTime next = recurrence.nextAfter(LocalDateTime.now());
+        if (scheduledCommandRepository.advanceNextFire(cmd.getId(), fireAt, next) == 0) {
+            return false;
+        }
+        cmd.setNextFireAt(next);
+        enqueue(cmd);
+        return true;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private RolloutPolicyDto rolloutOf(ScheduledCommandEntity cmd) {
+        if (cmd.getRolloutWavePercent() == null) {
+            return null;
+        }
+        return new RolloutPolicyDto(cmd.getRolloutWavePercent(), cmd.getRolloutWaveIntervalSeconds(), cmd.getRolloutMaxInFlight());
+    }
+
+    private record Upcoming(UUID id, long fireAt) {}
+
+    // Posição opaca para o cliente: último (nextFireAt, id) entregue
+    private record Cursor(LocalDateTime fireAt, UUID id) {
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((fireAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new Cursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+            } catch (RuntimeException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido");
+            }
+        }
+    }
 }
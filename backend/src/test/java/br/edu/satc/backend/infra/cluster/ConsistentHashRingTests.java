@@ -0,0 +1,100 @@
+package br.edu.satc.backend.infra.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import br.edu.satc.backend.services.AgentState;
+
+class ConsistentHashRingTests {
+
+	private static final int KEYS = 100_000;
+	private static final int VIRTUAL_NODES = 160;
+
+	@Test
+	void joiningNodeTakesAboutOneNthOfTheKeysAndNothingElseMoves() {
+		ConsistentHashRing before = ring(4);
+		ConsistentHashRing after = ring(5);
+		ConsistentHashRing.Member joined = member(4);
+
+		int moved = 0;
+		for (long hash : keyHashes()) {
+			ConsistentHashRing.Member previous = before.ownerOf(hash);
+			ConsistentHashRing.Member current = after.ownerOf(hash);
+			if (!previous.equals(current)) {
+				moved++;
+				// Só a instância nova ganha chaves
+				assertEquals(joined, current);
+			}
+		}
+		assertShare(moved, 5);
+	}
+
+	@Test
+	void leavingNodeOnlyReleasesItsOwnKeys() {
+		ConsistentHashRing before = ring(5);
+		List<ConsistentHashRing.Member> remaining = new ArrayList<>(before.members());
+		ConsistentHashRing.Member left = remaining.remove(2);
+		ConsistentHashRing after = new ConsistentHashRing(remaining, VIRTUAL_NODES);
+
+		int moved = 0;
+		for (long hash : keyHashes()) {
+			ConsistentHashRing.Member previous = before.ownerOf(hash);
+			if (!previous.equals(after.ownerOf(hash))) {
+				moved++;
+				assertEquals(left, previous);
+			}
+		}
+		assertShare(moved, 5);
+	}
+
+	@Test
+	void keysAreSpreadEvenlyAcrossMembers() {
+		ConsistentHashRing ring = ring(4);
+		int[] owned = new int[4];
+		for (long hash : keyHashes()) {
+			owned[ring.members().indexOf(ring.ownerOf(hash))]++;
+		}
+		for (int count : owned) {
+			assertShare(count, 4);
+		}
+	}
+
+	@Test
+	void emptyRingHasNoOwner() {
+		assertNull(new ConsistentHashRing(List.of(), VIRTUAL_NODES).ownerOf(42));
+	}
+
+	// Com 160 nós virtuais a fatia de cada instância fica a ±25% de 1/N
+	private static void assertShare(int count, int members) {
+		double share = (double) count / KEYS;
+		double expected = 1.0 / members;
+		assertTrue(share > expected * 0.75 && share < expected * 1.25,
+			"fatia " + share + " longe de 1/" + members);
+	}
+
+	private static ConsistentHashRing ring(int size) {
+		List<ConsistentHashRing.Member> members = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			members.add(member(i));
+		}
+		return new ConsistentHashRing(members, VIRTUAL_NODES);
+	}
+
+	private static ConsistentHashRing.Member member(int index) {
+		return new ConsistentHashRing.Member("node-" + index, "http://node-" + index + ":23456");
+	}
+
+	private static long[] keyHashes() {
+		long[] hashes = new long[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			hashes[i] = AgentState.hashKey("agent-key-" + i);
+		}
+		return hashes;
+	}
+}
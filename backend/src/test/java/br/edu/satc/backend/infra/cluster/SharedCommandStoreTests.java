@@ -0,0 +1,124 @@
+package br.edu.satc.backend.infra.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import br.edu.satc.backend.BackendApplication;
+import br.edu.satc.backend.dtos.AgentCommandDto;
+import br.edu.satc.backend.dtos.AgentRegisterRequestDto;
+import br.edu.satc.backend.dtos.CommandAllHostsRequestDto;
+import br.edu.satc.backend.dtos.CommandHostUniqueRequestDto;
+import br.edu.satc.backend.dtos.HeartbeatRequestDto;
+import br.edu.satc.backend.dtos.HeartbeatResponseDto;
+import br.edu.satc.backend.repositories.AgentRepository;
+import br.edu.satc.backend.services.AgentService;
+
+/**
+ * Duas instâncias do backend sobre o mesmo banco H2 em memória.
+ */
+class SharedCommandStoreTests {
+
+	private static ConfigurableApplicationContext nodeA;
+	private static ConfigurableApplicationContext nodeB;
+
+	@BeforeAll
+	static void startNodes() {
+		nodeA = start();
+		nodeB = start();
+	}
+
+	@AfterAll
+	static void stopNodes() {
+		nodeB.close();
+		nodeA.close();
+	}
+
+	@Test
+	void hostCommandQueuedOnOneNodeIsDeliveredByTheOther() {
+		String key = register(nodeA, "shared-host-1");
+
+		service(nodeA).queueCommandForHost(new CommandHostUniqueRequestDto("shared-host-1", "shutdown", null));
+		service(nodeB).pollSharedCommands();
+
+		HeartbeatResponseDto onB = heartbeat(nodeB, key);
+		assertEquals("shutdown", onB.command());
+		assertEquals(1, onB.commands().size());
+
+		// A linha já foi reivindicada pela outra instância
+		assertEquals("ok", heartbeat(nodeA, key).command());
+		assertEquals("ok", heartbeat(nodeB, key).command());
+	}
+
+	@Test
+	void concurrentClaimsDeliverEachCommandOnce() throws Exception {
+		String key = register(nodeA, "shared-host-2");
+		for (int i = 0; i < 20; i++) {
+			service(nodeA).queueCommandForHost(new CommandHostUniqueRequestDto("shared-host-2", "cmd-" + i, null));
+		}
+		service(nodeB).pollSharedCommands();
+
+		List<CompletableFuture<HeartbeatResponseDto>> heartbeats = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			ConfigurableApplicationContext node = i % 2 == 0 ? nodeA : nodeB;
+			heartbeats.add(CompletableFuture.supplyAsync(() -> heartbeat(node, key)));
+		}
+
+		List<Long> delivered = new ArrayList<>();
+		for (CompletableFuture<HeartbeatResponseDto> heartbeat : heartbeats) {
+			heartbeat.get().commands().stream().map(AgentCommandDto::sequence).forEach(delivered::add);
+		}
+		Set<Long> unique = new HashSet<>(delivered);
+		assertEquals(delivered.size(), unique.size());
+		assertEquals(20, unique.size());
+	}
+
+	@Test
+	void broadcastPublishedOnOneNodeReachesAgentsOfTheOther() {
+		String key = register(nodeA, "shared-host-3");
+		heartbeat(nodeB, key);
+
+		service(nodeA).queueCommandForAll(new CommandAllHostsRequestDto("restart", null, null));
+		service(nodeB).pollSharedCommands();
+
+		HeartbeatResponseDto first = heartbeat(nodeB, key);
+		assertTrue(first.commands().stream().anyMatch(command -> command.command().equals("restart")));
+		assertEquals("ok", heartbeat(nodeB, key).command());
+	}
+
+	private static ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(BackendApplication.class).run(
+			"--spring.datasource.url=jdbc:h2:mem:shared-commands;DB_CLOSE_DELAY=-1",
+			"--server.port=0",
+			"--agent.commands.shared.enabled=true",
+			// Os testes chamam pollSharedCommands diretamente
+			"--agent.commands.shared.poll-interval-ms=3600000");
+	}
+
+	private static String register(ConfigurableApplicationContext node, String hostname) {
+		String key = hostname + "-key";
+		service(node).registerAgent(new AgentRegisterRequestDto(hostname, "shared", key));
+		Long id = node.getBean(AgentRepository.class).findByAgentKey(key).orElseThrow().getId();
+		service(node).approveAgent(id);
+		return key;
+	}
+
+	private static HeartbeatResponseDto heartbeat(ConfigurableApplicationContext node, String key) {
+		return service(node).processHeartbeat(key, new HeartbeatRequestDto("online", "shared", null), false);
+	}
+
+	private static AgentService service(ConfigurableApplicationContext node) {
+		return node.getBean(AgentService.class);
+	}
+}
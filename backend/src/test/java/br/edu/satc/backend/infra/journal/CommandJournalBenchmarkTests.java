@@ -0,0 +1,77 @@
+package br.edu.satc.backend.infra.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.edu.satc.backend.services.QueuedCommand;
+
+/**
+ * Mede o journal com 1 milhão de comandos pendentes: gravação com
+ * fsync=interval, taxa com fsync=always e a recuperação na subida (leitura,
+ * compactação e regravação). Rodar manualmente com
+ * mvn test -Dtest=CommandJournalBenchmarkTests -Dsurefire.failIfNoSpecifiedTests=false
+ * depois de tirar o @Disabled.
+ */
+@Disabled("benchmark manual")
+class CommandJournalBenchmarkTests {
+
+	private static final int ENTRIES = 1_000_000;
+	private static final int HOSTS = 1_000;
+	private static final int FSYNC_ALWAYS_ENTRIES = 10_000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void recoveryOfOneMillionPendingCommands() {
+		Path file = dir.resolve("commands.journal");
+		long expiresAt = System.currentTimeMillis() + 3_600_000;
+
+		CommandJournal writer = journal(file, "interval");
+		writer.recover();
+		long start = System.nanoTime();
+		for (int i = 1; i <= ENTRIES; i++) {
+			writer.offer("host-" + i % HOSTS, new QueuedCommand(i, "restart", expiresAt));
+		}
+		writer.forceToDisk();
+		System.out.println("[BENCH] " + ENTRIES + " registros com fsync=interval: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		writer.close();
+
+		CommandJournal reader = journal(file, "interval");
+		start = System.nanoTime();
+		CommandJournal.Recovered recovered = reader.recover();
+		System.out.println("[BENCH] recuperação de " + ENTRIES + " pendentes: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		reader.close();
+		assertEquals(ENTRIES, recovered.pendingCommands());
+	}
+
+	@Test
+	void appendRateWithFsyncAlways() {
+		CommandJournal journal = journal(dir.resolve("always.journal"), "always");
+		journal.recover();
+		long expiresAt = System.currentTimeMillis() + 3_600_000;
+		long start = System.nanoTime();
+		for (int i = 1; i <= FSYNC_ALWAYS_ENTRIES; i++) {
+			journal.offer("host-" + i % HOSTS, new QueuedCommand(i, "restart", expiresAt));
+		}
+		long elapsedNs = System.nanoTime() - start;
+		System.out.println("[BENCH] fsync=always: " + FSYNC_ALWAYS_ENTRIES * 1_000_000_000L / elapsedNs + " registros/s");
+		journal.close();
+	}
+
+	private static CommandJournal journal(Path file, String fsync) {
+		CommandJournal journal = new CommandJournal();
+		ReflectionTestUtils.setField(journal, "enabled", true);
+		ReflectionTestUtils.setField(journal, "path", file);
+		ReflectionTestUtils.setField(journal, "initialSizeBytes", 128 * 1024 * 1024);
+		ReflectionTestUtils.setField(journal, "fsync", fsync);
+		ReflectionTestUtils.setField(journal, "compactionMinBytes", Long.MAX_VALUE);
+		return journal;
+	}
+}
@@ -0,0 +1,135 @@
+package br.edu.satc.backend.infra.udp;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import br.edu.satc.backend.dtos.AgentRegisterRequestDto;
+import br.edu.satc.backend.repositories.AgentRepository;
+import br.edu.satc.backend.services.AgentService;
+import br.edu.satc.backend.services.AgentState;
+
+/**
+ * Compara a vazão de heartbeats pelo HTTP (POST /heartbeat com clientes
+ * concorrentes) e pelo UDP (datagramas de 16 bytes disparados em sequência)
+ * para os mesmos agentes. Rodar manualmente com
+ * mvn test -Dtest=UdpHeartbeatBenchmarkTests -Dsurefire.failIfNoSpecifiedTests=false
+ * depois de tirar o @Disabled.
+ */
+@Disabled("benchmark manual")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+	"agent.heartbeat.udp.enabled=true",
+	"agent.heartbeat.udp.port=23991"
+})
+class UdpHeartbeatBenchmarkTests {
+
+	private static final int AGENTS = 1_000;
+	private static final int HTTP_BEATS = 20_000;
+	private static final int HTTP_CLIENTS = 8;
+	private static final int UDP_BEATS = 200_000;
+
+	@LocalServerPort
+	private int httpPort;
+
+	@Autowired
+	private AgentService agentService;
+
+	@Autowired
+	private AgentRepository agentRepository;
+
+	@Autowired
+	private UdpHeartbeatListener udpListener;
+
+	@Test
+	void udpVersusHttpHeartbeats() throws Exception {
+		List<String> keys = new ArrayList<>(AGENTS);
+		for (int i = 0; i < AGENTS; i++) {
+			String key = "bench-key-" + i;
+			agentService.registerAgent(new AgentRegisterRequestDto("bench-host-" + i, "bench", key));
+			agentService.approveAgent(agentRepository.findByAgentKey(key).orElseThrow().getId());
+			keys.add(key);
+		}
+
+		// Aquecimento dos dois caminhos antes de medir
+		http(keys, 2_000);
+		udp(keys, 20_000, 1);
+
+		long start = System.nanoTime();
+		http(keys, HTTP_BEATS);
+		long httpNs = System.nanoTime() - start;
+		System.out.println("[BENCH] HTTP: " + HTTP_BEATS * 1_000_000_000L / httpNs + " heartbeats/s ("
+			+ HTTP_CLIENTS + " clientes)");
+
+		long acceptedBefore = udpListener.stats().accepted();
+		start = System.nanoTime();
+		udp(keys, UDP_BEATS, 2);
+		// Espera o listener esvaziar o buffer do socket
+		long accepted;
+		long last = -1;
+		while ((accepted = udpListener.stats().accepted() - acceptedBefore) != last) {
+			last = accepted;
+			Thread.sleep(200);
+		}
+		long udpNs = System.nanoTime() - start - 200_000_000L;
+		System.out.println("[BENCH] UDP: " + accepted * 1_000_000_000L / udpNs + " heartbeats/s aceitos ("
+			+ accepted + " de " + UDP_BEATS + " enviados)");
+	}
+
+	private void http(List<String> keys, int beats) throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		URI uri = URI.create("http://localhost:" + httpPort + "/api/manager/heartbeat");
+		ExecutorService clients = Executors.newFixedThreadPool(HTTP_CLIENTS);
+		List<Future<?>> running = new ArrayList<>();
+		for (int c = 0; c < HTTP_CLIENTS; c++) {
+			int first = c;
+			running.add(clients.submit(() -> {
+				for (int i = first; i < beats; i += HTTP_CLIENTS) {
+					HttpRequest request = HttpRequest.newBuilder(uri)
+						.header("Authorization", "Bearer " + keys.get(i % keys.size()))
+						.header("Content-Type", "application/json")
+						.POST(HttpRequest.BodyPublishers.ofString("{\"status\":\"online\",\"group\":\"bench\"}"))
+						.build();
+					client.send(request, HttpResponse.BodyHandlers.discarding());
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : running) {
+			future.get();
+		}
+		clients.shutdown();
+	}
+
+	private void udp(List<String> keys, int beats, int epoch) throws Exception {
+		long[] hashes = keys.stream().mapToLong(AgentState::hashKey).toArray();
+		InetSocketAddress target = new InetSocketAddress("localhost", 23991);
+		ByteBuffer datagram = ByteBuffer.allocate(UdpHeartbeatListener.DATAGRAM_SIZE);
+		try (DatagramChannel channel = DatagramChannel.open()) {
+			for (int i = 0; i < beats; i++) {
+				datagram.clear();
+				datagram.putLong(hashes[i % hashes.length]);
+				datagram.putInt(i / hashes.length + 1);
+				datagram.put((byte) 0);
+				datagram.put((byte) 1);
+				datagram.putShort((short) epoch);
+				datagram.flip();
+				channel.send(datagram, target);
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.edu.satc.backend.infra.cluster.ClusterMembership;
+import br.edu.satc.backend.models.AgentEntity;
+import br.edu.satc.backend.repositories.AgentRepository;
+
+class AgentRegistryTests {
+
+	private AgentRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		registry = new AgentRegistry(mock(AgentRepository.class), new ClusterMembership(null));
+	}
+
+	@Test
+	void heartbeatWithANewGroupMovesTheAgentInTheIndex() {
+		AgentState agent = registry.put(entity(1, "lab"));
+		assertEquals(Set.of(agent), registry.inGroup("lab"));
+
+		agent.heartbeat("online", "office", System.currentTimeMillis());
+		registry.regroup(agent);
+
+		assertEquals(Set.of(agent), registry.inGroup("office"));
+		// Grupo sem agentes deixa de existir
+		assertFalse(registry.hasGroup("lab"));
+	}
+
+	@Test
+	void approvalWithAnotherGroupReindexesTheSameState() {
+		AgentState agent = registry.put(entity(1, "lab"));
+
+		AgentState updated = registry.put(entity(1, "office"));
+
+		assertSame(agent, updated);
+		assertEquals(Set.of(agent), registry.inGroup("office"));
+		assertFalse(registry.hasGroup("lab"));
+	}
+
+	@Test
+	void removedAgentIsNotIndexedAgainByALateRegroup() {
+		AgentState agent = registry.put(entity(1, "lab"));
+		registry.remove(agent.getAgentKey());
+
+		agent.heartbeat("online", "office", System.currentTimeMillis());
+		registry.regroup(agent);
+
+		assertFalse(registry.hasGroup("lab"));
+		assertFalse(registry.hasGroup("office"));
+	}
+
+	@Test
+	void concurrentGroupChangesLeaveTheAgentOnlyInItsCurrentGroup() throws Exception {
+		AgentState agent = registry.put(entity(1, "g0"));
+		AgentState other = registry.put(entity(2, "g0"));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				tasks.add(executor.submit(() -> {
+					for (int i = 0; i < 2000; i++) {
+						String group = "g" + ThreadLocalRandom.current().nextInt(4);
+						agent.heartbeat("online", group, System.currentTimeMillis());
+						registry.regroup(agent);
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (Map.Entry<String, Set<AgentState>> group : registry.groups().entrySet()) {
+			boolean current = group.getKey().equals(agent.getGroup());
+			assertEquals(current, group.getValue().contains(agent), "grupo " + group.getKey());
+		}
+		assertTrue(registry.inGroup("g0").contains(other));
+	}
+
+	private static AgentEntity entity(long id, String group) {
+		AgentEntity entity = new AgentEntity();
+		entity.setId(id);
+		entity.setAgentKey("key-" + id);
+		entity.setHostname("host-" + id);
+		entity.setAgentGroup(group);
+		entity.setStatus("online");
+		return entity;
+	}
+}
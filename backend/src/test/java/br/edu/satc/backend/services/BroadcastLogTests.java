@@ -0,0 +1,153 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+import br.edu.satc.backend.infra.journal.CommandJournal;
+import br.edu.satc.backend.models.AgentEntity;
+
+class BroadcastLogTests {
+
+	private BroadcastLog log;
+
+	@BeforeEach
+	void setUp() {
+		CommandJournal journal = mock(CommandJournal.class);
+		CommandQueue queue = new CommandQueue(journal);
+		ReflectionTestUtils.setField(queue, "ttlMs", 60_000L);
+		log = new BroadcastLog(queue, journal);
+		ReflectionTestUtils.setField(log, "history", 64);
+	}
+
+	@Test
+	void agentCollectsGlobalAndOwnGroupEntriesInGenerationOrder() {
+		AgentState agent = agent("key-1", "lab");
+		QueuedCommand first = log.publish(null, "restart", null, null);
+		log.publish("office", "shutdown", null, null);
+		QueuedCommand second = log.publish("lab", "update", null, null);
+		QueuedCommand third = log.publish(null, "reboot", null, null);
+
+		assertTrue(log.hasPending(agent));
+		assertEquals(List.of(first, second, third), log.collect(agent));
+		assertEquals(log.latest(), agent.getBroadcastCursor());
+		assertFalse(log.hasPending(agent));
+		assertEquals(List.of(), log.collect(agent));
+	}
+
+	@Test
+	void cursorOnlyDeliversEntriesPublishedAfterIt() {
+		AgentState agent = agent("key-1", "lab");
+		log.publish(null, "restart", null, null);
+		log.collect(agent);
+		QueuedCommand later = log.publish("lab", "update", null, null);
+
+		assertEquals(List.of(later), log.collect(agent));
+	}
+
+	@Test
+	void newlyApprovedAgentStartsAtTheCurrentGeneration() {
+		log.publish(null, "restart", null, null);
+		AgentState agent = agent("key-1", "lab");
+		agent.resetBroadcastCursor(log.latest());
+
+		assertFalse(log.hasPending(agent));
+		assertEquals(List.of(), log.collect(agent));
+	}
+
+	@Test
+	void expiredEntriesAreSkippedButTheCursorStillMoves() {
+		AgentState agent = agent("key-1", "lab");
+		log.publish(null, "restart", 0L, null);
+		QueuedCommand alive = log.publish(null, "update", null, null);
+
+		assertEquals(List.of(alive), log.collect(agent));
+		assertEquals(alive.sequence(), agent.getBroadcastCursor());
+
+		log.sweepExpired();
+		assertEquals(1, log.stats().entries());
+	}
+
+	@Test
+	void historyKeepsOnlyTheNewestEntriesPerScope() {
+		ReflectionTestUtils.setField(log, "history", 2);
+		AgentState agent = agent("key-1", "lab");
+		log.publish(null, "c1", null, null);
+		QueuedCommand c2 = log.publish(null, "c2", null, null);
+		QueuedCommand c3 = log.publish(null, "c3", null, null);
+
+		assertEquals(List.of(c2, c3), log.collect(agent));
+	}
+
+	@Test
+	void rolloutEntryIsHeldForAgentsNotYetReleasedWithoutBlockingLaterOnes() {
+		AgentState early = RolloutTests.agentInBuckets(0, 1000);
+		AgentState late = RolloutTests.agentInBuckets(1000, 2000);
+		QueuedCommand staged = log.publish(null, "update", null, new RolloutPolicyDto(10, 1, null));
+		QueuedCommand next = log.publish(null, "restart", null, null);
+
+		assertEquals(List.of(staged, next), log.collect(early));
+		assertEquals(List.of(next), log.collect(late));
+		assertEquals(log.latest(), late.getBroadcastCursor());
+		assertArrayEquals(new long[] { staged.sequence() }, late.getHeldBroadcasts());
+		assertFalse(log.hasPending(late));
+	}
+
+	@Test
+	void heldEntryIsDeliveredOnceTheWaveReachesTheAgent() throws InterruptedException {
+		AgentState late = RolloutTests.agentInBuckets(1000, 2000);
+		QueuedCommand staged = log.publish(null, "update", null, new RolloutPolicyDto(10, 1, null));
+		log.collect(late);
+
+		Thread.sleep(1100);
+		List<BroadcastLog.WaveRelease> released = log.releaseDueWaves(command -> 0);
+
+		assertEquals(1, released.size());
+		assertEquals(2000, released.get(0).releasedPermyriad());
+		assertTrue(log.hasPending(late));
+		assertEquals(List.of(staged), log.collect(late));
+		assertEquals(0, late.getHeldBroadcasts().length);
+		assertEquals(List.of(), log.collect(late));
+	}
+
+	@Test
+	void heldEntriesAndCursorSurviveARestart() {
+		AgentState late = RolloutTests.agentInBuckets(1000, 2000);
+		log.publish(null, "update", null, new RolloutPolicyDto(10, 60, null));
+		log.publish("lab", "update", null, new RolloutPolicyDto(10, 60, null));
+		log.collect(late);
+		assertEquals(2, late.getHeldBroadcasts().length);
+
+		AgentEntity saved = new AgentEntity();
+		saved.setId(late.getId());
+		saved.setAgentKey(late.getAgentKey());
+		saved.setHostname(late.getHostname());
+		saved.setAgentGroup("lab");
+		saved.setStatus("online");
+		saved.setBroadcastCursor(late.getBroadcastCursor());
+		saved.setBroadcastHeld(late.encodeHeldBroadcasts());
+		AgentState restored = new AgentState(saved);
+
+		assertEquals(late.getBroadcastCursor(), restored.getBroadcastCursor());
+		assertArrayEquals(late.getHeldBroadcasts(), restored.getHeldBroadcasts());
+	}
+
+	static AgentState agent(String key, String group) {
+		AgentEntity entity = new AgentEntity();
+		entity.setId((long) key.hashCode());
+		entity.setAgentKey(key);
+		entity.setHostname("host-" + key);
+		entity.setAgentGroup(group);
+		entity.setStatus("online");
+		return new AgentState(entity);
+	}
+}
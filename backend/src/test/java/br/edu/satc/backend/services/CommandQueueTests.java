@@ -0,0 +1,130 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.edu.satc.backend.infra.journal.CommandJournal;
+
+class CommandQueueTests {
+
+	private static final int MAX_PER_HOST = 3;
+
+	private CommandQueue queue;
+
+	@BeforeEach
+	void setUp() {
+		queue = new CommandQueue(mock(CommandJournal.class));
+		ReflectionTestUtils.setField(queue, "maxPerHost", MAX_PER_HOST);
+		ReflectionTestUtils.setField(queue, "ttlMs", 60_000L);
+	}
+
+	@Test
+	void drainReturnsCommandsInArrivalOrderAndEmptiesTheQueue() {
+		QueuedCommand first = offer("lab-01", "restart");
+		QueuedCommand second = offer("lab-01", "shutdown");
+		QueuedCommand other = offer("lab-02", "restart");
+
+		assertEquals(List.of(first, second), queue.drain("lab-01"));
+		assertFalse(queue.hasPending("lab-01"));
+		assertTrue(queue.hasPending("lab-02"));
+		assertEquals(List.of(), queue.drain("lab-01"));
+		assertEquals(List.of(other), queue.drain("lab-02"));
+	}
+
+	@Test
+	void fullQueueDropsTheOldestCommand() {
+		offer("lab-01", "c1");
+		QueuedCommand c2 = offer("lab-01", "c2");
+		QueuedCommand c3 = offer("lab-01", "c3");
+		QueuedCommand c4 = offer("lab-01", "c4");
+
+		assertEquals(List.of(c2, c3, c4), queue.drain("lab-01"));
+		assertEquals(1, queue.stats().dropped());
+		assertEquals(0, queue.stats().pending());
+	}
+
+	@Test
+	void sequencesGrowAcrossHosts() {
+		long a = offer("lab-01", "restart").sequence();
+		long b = offer("lab-02", "restart").sequence();
+		long c = offer("lab-01", "restart").sequence();
+
+		assertTrue(a < b && b < c);
+	}
+
+	@Test
+	void restoredCommandsGoBackAheadOfNewerOnes() {
+		QueuedCommand c1 = offer("lab-01", "c1");
+		QueuedCommand c2 = offer("lab-01", "c2");
+		List<QueuedCommand> undelivered = queue.drain("lab-01");
+		QueuedCommand c3 = offer("lab-01", "c3");
+
+		queue.restore("lab-01", undelivered);
+
+		assertEquals(List.of(c1, c2, c3), queue.drain("lab-01"));
+	}
+
+	@Test
+	void restoreOverTheLimitKeepsTheNewest() {
+		List<QueuedCommand> undelivered = List.of(queue.newCommand("c1", null), queue.newCommand("c2", null));
+		QueuedCommand c3 = offer("lab-01", "c3");
+		QueuedCommand c4 = offer("lab-01", "c4");
+
+		queue.restore("lab-01", undelivered);
+
+		assertEquals(List.of(undelivered.get(1), c3, c4), queue.drain("lab-01"));
+		assertEquals(1, queue.stats().dropped());
+	}
+
+	@Test
+	void ttlFromTheRequestOverridesTheDefault() {
+		long before = System.currentTimeMillis();
+		QueuedCommand defaulted = queue.newCommand("restart", null);
+		QueuedCommand requested = queue.newCommand("restart", 5L);
+		long after = System.currentTimeMillis();
+
+		assertTrue(defaulted.expiresAt() >= before + 60_000 && defaulted.expiresAt() <= after + 60_000);
+		assertTrue(requested.expiresAt() >= before + 5_000 && requested.expiresAt() <= after + 5_000);
+	}
+
+	@Test
+	void drainSkipsExpiredCommands() {
+		QueuedCommand stale = new QueuedCommand(100, "shutdown", System.currentTimeMillis() - 1);
+		queue.offer("lab-01", stale);
+		QueuedCommand fresh = offer("lab-01", "restart");
+
+		assertEquals(List.of(fresh), queue.drain("lab-01"));
+		assertEquals(1, queue.stats().expired());
+		assertEquals(1, queue.stats().drained());
+		assertEquals(0, queue.stats().pending());
+	}
+
+	@Test
+	void sweepRemovesExpiredCommandsAndEmptyHosts() {
+		long past = System.currentTimeMillis() - 1;
+		queue.offer("lab-01", new QueuedCommand(100, "shutdown", past));
+		queue.offer("lab-02", new QueuedCommand(101, "shutdown", past));
+		QueuedCommand fresh = offer("lab-02", "restart");
+
+		queue.sweepExpired();
+
+		assertFalse(queue.hasPending("lab-01"));
+		assertEquals(2, queue.stats().expired());
+		assertEquals(1, queue.stats().pending());
+		assertEquals(List.of(fresh), queue.drain("lab-02"));
+	}
+
+	private QueuedCommand offer(String hostname, String command) {
+		QueuedCommand queued = queue.newCommand(command, null);
+		queue.offer(hostname, queued);
+		return queued;
+	}
+}
@@ -0,0 +1,116 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CommandTrackerTests {
+
+	private CommandTracker tracker;
+	private AgentState agent;
+	private long sequence;
+
+	@BeforeEach
+	void setUp() {
+		tracker = new CommandTracker();
+		ReflectionTestUtils.setField(tracker, "redeliveryTimeoutMs", 60_000L);
+		ReflectionTestUtils.setField(tracker, "maxDeliveries", 3);
+		ReflectionTestUtils.setField(tracker, "trackedCommands", 16);
+		ReflectionTestUtils.setField(tracker, "maxPerHost", 8);
+		agent = BroadcastLogTests.agent("key-1", "lab");
+	}
+
+	@Test
+	void agentWithoutAcksCountsTheCommandAsDeliveredOnResponse() {
+		QueuedCommand command = command();
+
+		assertEquals(List.of(command), tracker.deliver(agent, List.of(command)));
+		assertEquals(1, tracker.find(command.sequence()).delivered());
+		assertEquals(0, tracker.awaitingAck(command));
+
+		// Resposta perdida: volta para a fila do host e deixa de contar como entregue
+		assertEquals(List.of(command), tracker.undelivered(agent, List.of(command)));
+		assertEquals(0, tracker.find(command.sequence()).delivered());
+	}
+
+	@Test
+	void acknowledgedCommandLeavesTheInFlightSet() {
+		ReflectionTestUtils.setField(tracker, "redeliveryTimeoutMs", 0L);
+		tracker.acknowledge(agent, List.of());
+		QueuedCommand command = command();
+
+		tracker.deliver(agent, List.of(command));
+		assertEquals(1, tracker.awaitingAck(command));
+
+		tracker.acknowledge(agent, List.of(command.sequence()));
+		tracker.acknowledge(agent, List.of(command.sequence()));
+
+		assertEquals(1, tracker.find(command.sequence()).acked());
+		assertEquals(0, tracker.awaitingAck(command));
+		assertEquals(List.of(), tracker.deliver(agent, List.of()));
+	}
+
+	@Test
+	void unconfirmedCommandIsRedeliveredInSequenceOrder() {
+		ReflectionTestUtils.setField(tracker, "redeliveryTimeoutMs", 0L);
+		tracker.acknowledge(agent, List.of());
+		QueuedCommand first = command();
+		QueuedCommand second = command();
+
+		tracker.deliver(agent, List.of(first));
+
+		assertEquals(List.of(first, second), tracker.deliver(agent, List.of(second)));
+		assertEquals(1, tracker.find(first.sequence()).redelivered());
+		assertEquals(0, tracker.find(second.sequence()).redelivered());
+	}
+
+	@Test
+	void commandIsAbandonedAfterMaxDeliveries() {
+		ReflectionTestUtils.setField(tracker, "redeliveryTimeoutMs", 0L);
+		tracker.acknowledge(agent, List.of());
+		QueuedCommand command = command();
+
+		tracker.deliver(agent, List.of(command));
+		assertEquals(List.of(command), tracker.deliver(agent, List.of()));
+		assertEquals(List.of(command), tracker.deliver(agent, List.of()));
+		assertEquals(List.of(), tracker.deliver(agent, List.of()));
+
+		assertEquals(2, tracker.find(command.sequence()).redelivered());
+		assertEquals(1, tracker.find(command.sequence()).abandoned());
+		assertEquals(0, tracker.awaitingAck(command));
+	}
+
+	@Test
+	void lostResponseToAnAckingAgentIsRedeliveredOnTheNextBeat() {
+		tracker.acknowledge(agent, List.of());
+		QueuedCommand command = command();
+		tracker.deliver(agent, List.of(command));
+		assertEquals(List.of(), tracker.deliver(agent, List.of()));
+
+		assertEquals(List.of(), tracker.undelivered(agent, List.of(command)));
+
+		assertEquals(List.of(command), tracker.deliver(agent, List.of()));
+	}
+
+	@Test
+	void onlyTheNewestCommandsAreTracked() {
+		QueuedCommand oldest = command();
+		for (int i = 0; i < 16; i++) {
+			command();
+		}
+
+		assertNull(tracker.find(oldest.sequence()));
+		assertEquals(16, tracker.recent(100).size());
+	}
+
+	private QueuedCommand command() {
+		QueuedCommand command = new QueuedCommand(++sequence, "restart", System.currentTimeMillis() + 60_000);
+		tracker.register(command, "host:lab-01", 1);
+		return command;
+	}
+}
@@ -0,0 +1,96 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class IntervalHistogramTests {
+
+	@Test
+	void bucketIndexFollowsThePowerOfTwoLayout() {
+		assertEquals(0, IntervalHistogram.indexOf(0));
+		assertEquals(0, IntervalHistogram.indexOf(255));
+		assertEquals(1, IntervalHistogram.indexOf(256));
+		assertEquals(1, IntervalHistogram.indexOf(319));
+		assertEquals(2, IntervalHistogram.indexOf(320));
+		assertEquals(4, IntervalHistogram.indexOf(511));
+		assertEquals(5, IntervalHistogram.indexOf(512));
+		assertEquals(IntervalHistogram.BUCKETS - 2, IntervalHistogram.indexOf((1L << 23) - 1));
+		assertEquals(IntervalHistogram.BUCKETS - 1, IntervalHistogram.indexOf(1L << 23));
+		assertEquals(IntervalHistogram.BUCKETS - 1, IntervalHistogram.indexOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	void everyIntervalFallsBelowItsBucketBoundWithinTwentyFivePercent() {
+		for (long interval = 256; interval < (1L << 23); interval += 37) {
+			int index = IntervalHistogram.indexOf(interval);
+			long upper = IntervalHistogram.upperBoundOf(index);
+			assertTrue(interval < upper, "intervalo " + interval + " acima do balde " + index);
+			assertTrue(interval >= IntervalHistogram.upperBoundOf(index - 1), "intervalo " + interval + " abaixo do balde " + index);
+			assertTrue(upper - interval <= interval / 4, "erro acima de 25% em " + interval);
+		}
+	}
+
+	@Test
+	void percentilesReturnTheUpperBoundOfTheBucket() {
+		IntervalHistogram histogram = new IntervalHistogram();
+		assertNull(histogram.percentile(0.5));
+
+		long now = 1_000_000;
+		histogram.beat(now, 1000);
+		for (int i = 0; i < 90; i++) {
+			histogram.beat(now += 1000, 10_000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.beat(now += 10_000, 10_000);
+		}
+
+		// 1000 ms cai em [896, 1024); 10000 ms em [8192, 10240)
+		assertEquals(1024L, histogram.percentile(0.5));
+		assertEquals(1024L, histogram.percentile(0.9));
+		assertEquals(10240L, histogram.percentile(0.99));
+	}
+
+	@Test
+	void firstBeatAndBeatAfterPauseOnlyMarkTheTime() {
+		IntervalHistogram histogram = new IntervalHistogram();
+		histogram.beat(1_000_000, 1000);
+		histogram.pause();
+		histogram.beat(1_600_000, 1000);
+
+		assertNull(histogram.percentile(0.5));
+		assertEquals(0, histogram.getMissedBeats());
+
+		histogram.beat(1_601_000, 1000);
+		assertEquals(1024L, histogram.percentile(0.5));
+	}
+
+	@Test
+	void longGapCountsTheMissedBeats() {
+		IntervalHistogram histogram = new IntervalHistogram();
+		histogram.beat(1_000_000, 1000);
+		histogram.beat(1_001_400, 1000);
+		assertEquals(0, histogram.getMissedBeats());
+
+		histogram.beat(1_004_400, 1000);
+		assertEquals(2, histogram.getMissedBeats());
+	}
+
+	@Test
+	void countsAreHalvedWhenTheThresholdIsReached() {
+		IntervalHistogram histogram = new IntervalHistogram();
+		long now = 1_000_000;
+		histogram.beat(now, 1000);
+		for (int i = 0; i < 4096; i++) {
+			histogram.beat(now += 1000, 1000);
+		}
+
+		long[] buckets = new long[IntervalHistogram.BUCKETS];
+		histogram.addTo(buckets);
+		assertEquals(2048, Arrays.stream(buckets).sum());
+	}
+}
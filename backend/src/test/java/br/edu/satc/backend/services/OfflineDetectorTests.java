@@ -0,0 +1,124 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import br.edu.satc.backend.infra.cluster.ClusterMembership;
+import br.edu.satc.backend.models.AgentEntity;
+import br.edu.satc.backend.repositories.AgentRepository;
+
+class OfflineDetectorTests {
+
+	private static final long TIMEOUT_MS = 1000;
+	private static final long TICK_MS = 50;
+
+	private AgentRegistry registry;
+	private JdbcTemplate jdbcTemplate;
+	private OfflineDetector detector;
+
+	@BeforeEach
+	void setUp() {
+		registry = new AgentRegistry(mock(AgentRepository.class), new ClusterMembership(null));
+		jdbcTemplate = mock(JdbcTemplate.class);
+		detector = new OfflineDetector(registry, jdbcTemplate, mock(HeartbeatBuffer.class));
+		ReflectionTestUtils.setField(detector, "timeoutMs", TIMEOUT_MS);
+		ReflectionTestUtils.setField(detector, "tickMs", TICK_MS);
+	}
+
+	@Test
+	void staleDeadlineIsClampedToTheNextTick() {
+		AgentState agent = agent(1);
+		agent.heartbeat("online", "lab", System.currentTimeMillis() - 3_600_000);
+
+		detector.init();
+
+		// O balde do prazo real já passou; sem o ajuste só seria visto na volta seguinte
+		long lastTick = (Long) ReflectionTestUtils.getField(detector, "lastTick");
+		int mask = (Integer) ReflectionTestUtils.getField(detector, "mask");
+		Set<AgentState>[] wheel = wheel();
+		assertTrue(wheel[(int) ((lastTick + 1) & mask)].contains(agent));
+		assertEquals(1, detector.stats().tracked());
+	}
+
+	@Test
+	void silentAgentExpiresAndBeatingAgentIsRescheduled() throws InterruptedException {
+		long start = System.currentTimeMillis();
+		AgentState beating = agent(1);
+		AgentState silent = agent(2);
+		beating.heartbeat("online", "lab", start);
+		silent.heartbeat("online", "lab", start);
+		detector.init();
+
+		Thread.sleep(TIMEOUT_MS / 2);
+		beating.heartbeat("online", "lab", System.currentTimeMillis());
+		// Passou o prazo do silencioso, mas não o do que bateu na metade
+		Thread.sleep(Math.max(0, start + TIMEOUT_MS + 5 * TICK_MS - System.currentTimeMillis()));
+		detector.tick();
+
+		assertEquals("offline", silent.getStatus());
+		assertEquals("online", beating.getStatus());
+		assertEquals(1, detector.stats().expired());
+		assertEquals(1, detector.stats().tracked());
+		verify(jdbcTemplate).batchUpdate(anyString(), eq(List.of(silent)), eq(1), any(ParameterizedPreparedStatementSetter.class));
+	}
+
+	@Test
+	void removedAgentLeavesTheWheelWithoutGoingOffline() throws InterruptedException {
+		AgentState agent = agent(1);
+		agent.heartbeat("online", "lab", System.currentTimeMillis() - 3_600_000);
+		detector.init();
+
+		registry.remove(agent.getAgentKey());
+		Thread.sleep(3 * TICK_MS);
+		detector.tick();
+
+		assertEquals("online", agent.getStatus());
+		assertEquals(0, detector.stats().expired());
+		assertEquals(0, detector.stats().tracked());
+		verifyNoInteractions(jdbcTemplate);
+	}
+
+	@Test
+	void agentOutsideTheRegistryIsNotTracked() {
+		detector.init();
+		AgentState foreign = new AgentState(entity(1));
+
+		detector.track(foreign);
+
+		assertEquals(0, detector.stats().tracked());
+	}
+
+	private AgentState agent(long id) {
+		return registry.put(entity(id));
+	}
+
+	private static AgentEntity entity(long id) {
+		AgentEntity entity = new AgentEntity();
+		entity.setId(id);
+		entity.setAgentKey("key-" + id);
+		entity.setHostname("host-" + id);
+		entity.setAgentGroup("lab");
+		entity.setStatus("online");
+		return entity;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Set<AgentState>[] wheel() {
+		return (Set<AgentState>[]) ReflectionTestUtils.getField(detector, "wheel");
+	}
+}
@@ -0,0 +1,79 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import br.edu.satc.backend.dtos.RolloutPolicyDto;
+
+class RolloutTests {
+
+	private static final long NOW = 1_000_000;
+
+	@Test
+	void firstWaveIsReleasedOnPublish() {
+		Rollout rollout = Rollout.of(new RolloutPolicyDto(10, 60, null), NOW);
+
+		assertEquals(1000, rollout.getReleasedPermyriad());
+		assertFalse(rollout.isComplete());
+		assertNull(Rollout.of(null, NOW));
+	}
+
+	@Test
+	void nextWaveWaitsForTheInterval() {
+		Rollout rollout = Rollout.of(new RolloutPolicyDto(10, 60, null), NOW);
+
+		assertFalse(rollout.advance(NOW + 59_999, 0));
+		assertTrue(rollout.advance(NOW + 60_000, 0));
+		assertEquals(2000, rollout.getReleasedPermyriad());
+		// O intervalo conta a partir da onda anterior
+		assertFalse(rollout.advance(NOW + 60_001, 0));
+	}
+
+	@Test
+	void waveIsHeldWhileTooManyDeliveriesAreUnconfirmed() {
+		Rollout rollout = Rollout.of(new RolloutPolicyDto(10, 60, 5), NOW);
+
+		assertFalse(rollout.advance(NOW + 60_000, 5));
+		assertTrue(rollout.advance(NOW + 60_000, 4));
+	}
+
+	@Test
+	void releasedLimitStopsAtTheWholeFleet() {
+		Rollout rollout = Rollout.of(new RolloutPolicyDto(30, 1, null), NOW);
+		long now = NOW;
+		while (rollout.advance(now += 1000, 0)) {
+		}
+
+		assertEquals(Rollout.FULL, rollout.getReleasedPermyriad());
+		assertTrue(rollout.isComplete());
+	}
+
+	@Test
+	void agentIsReleasedOnceTheLimitPassesItsBucket() {
+		AgentState early = agentInBuckets(0, 1000);
+		AgentState late = agentInBuckets(1000, 2000);
+		Rollout rollout = Rollout.of(new RolloutPolicyDto(10, 60, null), NOW);
+
+		assertTrue(rollout.releases(early));
+		assertFalse(rollout.releases(late));
+
+		rollout.advance(NOW + 60_000, 0);
+		assertTrue(rollout.releases(late));
+	}
+
+	/**
+	 * Agente cujo balde fixo (derivado do hash da chave) cai em [from, to).
+	 */
+	static AgentState agentInBuckets(int from, int to) {
+		for (int i = 0; ; i++) {
+			AgentState agent = BroadcastLogTests.agent("key-" + from + "-" + i, "lab");
+			if (agent.getRolloutBucket() >= from && agent.getRolloutBucket() < to) {
+				return agent;
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import br.edu.satc.backend.dtos.RecurrenceDto;
+
+class ScheduleRecurrenceTests {
+
+	private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+	private static final ZoneId SAO_PAULO = ZoneId.of("America/Sao_Paulo");
+
+	@Test
+	void fiveFieldCronGetsTheSecondsField() {
+		ScheduleRecurrence recurrence = ScheduleRecurrence.of(new RecurrenceDto("30 7 * * MON-FRI", null, null, "UTC"));
+
+		assertEquals("0 30 7 * * MON-FRI", recurrence.cron());
+	}
+
+	@Test
+	void weekdaysAndTimeBecomeACronExpression() {
+		ScheduleRecurrence recurrence = ScheduleRecurrence.of(new RecurrenceDto(null,
+			List.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.MONDAY), LocalTime.of(7, 30), "UTC"));
+
+		assertEquals("0 30 7 * * MON,WED", recurrence.cron());
+	}
+
+	@Test
+	void invalidRulesAreRejected() {
+		assertThrows(ResponseStatusException.class,
+			() -> ScheduleRecurrence.of(new RecurrenceDto("0 7 * *", null, null, null)));
+		assertThrows(ResponseStatusException.class,
+			() -> ScheduleRecurrence.of(new RecurrenceDto("0 7 * * *", null, LocalTime.NOON, null)));
+		assertThrows(ResponseStatusException.class,
+			() -> ScheduleRecurrence.of(new RecurrenceDto(null, null, LocalTime.NOON, "Lua/Base")));
+		assertThrows(ResponseStatusException.class,
+			() -> ScheduleRecurrence.of(new RecurrenceDto(null, List.of(DayOfWeek.MONDAY), null, null)));
+	}
+
+	@Test
+	void nextFireFollowsTheRuleInItsOwnZone() {
+		ScheduleRecurrence recurrence = ScheduleRecurrence.parse("0 0 8 * * *", SAO_PAULO.getId());
+
+		// 09:00 em São Paulo: as 08:00 de hoje já passaram
+		LocalDateTime next = recurrence.nextAfter(server(ZonedDateTime.of(2026, 3, 10, 9, 0, 0, 0, SAO_PAULO)));
+
+		assertEquals(server(ZonedDateTime.of(2026, 3, 11, 8, 0, 0, 0, SAO_PAULO)), next);
+	}
+
+	@Test
+	void weeklyRuleKeepsItsWallClockTimeAcrossDaylightSaving() {
+		ScheduleRecurrence recurrence = ScheduleRecurrence.parse("0 0 9 * * MON", BERLIN.getId());
+
+		LocalDateTime next = recurrence.nextAfter(server(ZonedDateTime.of(2026, 3, 23, 9, 0, 0, 0, BERLIN)));
+
+		assertEquals(server(ZonedDateTime.of(2026, 3, 30, 9, 0, 0, 0, BERLIN)), next);
+	}
+
+	@Test
+	void timeSkippedBySpringForwardFiresRightAfterTheChange() {
+		// Em 29/03/2026 Berlim pula de 02:00 para 03:00
+		ScheduleRecurrence recurrence = ScheduleRecurrence.parse("0 30 2 * * *", BERLIN.getId());
+
+		LocalDateTime gap = recurrence.nextAfter(server(ZonedDateTime.of(2026, 3, 28, 2, 30, 0, 0, BERLIN)));
+		assertEquals(server(ZonedDateTime.of(2026, 3, 29, 3, 30, 0, 0, BERLIN)), gap);
+
+		LocalDateTime after = recurrence.nextAfter(gap);
+		assertEquals(server(ZonedDateTime.of(2026, 3, 30, 2, 30, 0, 0, BERLIN)), after);
+	}
+
+	@Test
+	void timeRepeatedByFallBackFiresOnce() {
+		// Em 25/10/2026 Berlim volta de 03:00 para 02:00: 02:30 acontece duas vezes
+		ScheduleRecurrence recurrence = ScheduleRecurrence.parse("0 30 2 * * *", BERLIN.getId());
+
+		LocalDateTime first = recurrence.nextAfter(server(ZonedDateTime.of(2026, 10, 24, 12, 0, 0, 0, BERLIN)));
+		assertEquals(server(ZonedDateTime.ofLocal(LocalDateTime.of(2026, 10, 25, 2, 30), BERLIN, null)), first);
+
+		LocalDateTime next = recurrence.nextAfter(first);
+		assertEquals(server(ZonedDateTime.of(2026, 10, 26, 2, 30, 0, 0, BERLIN)), next);
+	}
+
+	// nextAfter recebe e devolve o horário local do servidor
+	private static LocalDateTime server(ZonedDateTime time) {
+		return time.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+	}
+}
@@ -0,0 +1,74 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.edu.satc.backend.dtos.BulkScheduleResponseDto;
+import br.edu.satc.backend.dtos.CommandGroupHostsRequestDto;
+import br.edu.satc.backend.dtos.ScheduleCommandDto;
+
+/**
+ * Mede o agendamento em lote de 10 mil entradas: a primeira chamada (fria) e
+ * a média das seguintes. Rodar manualmente com
+ * mvn test -Dtest=ScheduledCommandBulkBenchmarkTests -Dsurefire.failIfNoSpecifiedTests=false
+ * depois de tirar o @Disabled.
+ */
+@Disabled("benchmark manual")
+@SpringBootTest(properties = "agent.schedules.bulk.max-entries=10000")
+class ScheduledCommandBulkBenchmarkTests {
+
+	private static final int ENTRIES = 10_000;
+	private static final int RUNS = 5;
+
+	@Autowired
+	private ScheduledCommandService scheduledCommandService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void bulkScheduleOfTenThousandEntries() {
+		long cold = timeBulk(0);
+		System.out.println("[BENCH] lote de " + ENTRIES + " agendamentos, primeira chamada: " + cold + " ms");
+
+		long total = 0;
+		for (int run = 1; run <= RUNS; run++) {
+			total += timeBulk(run);
+		}
+		System.out.println("[BENCH] lote de " + ENTRIES + " agendamentos, média de " + RUNS + ": " + total / RUNS + " ms");
+
+		// Referência: as mesmas linhas com um INSERT por linha, sem validação nem linha do tempo
+		long start = System.nanoTime();
+		for (int i = 0; i < ENTRIES; i++) {
+			jdbcTemplate.update("INSERT INTO scheduled_commands (id, command, target_type, target_value, scheduled_for, "
+				+ "next_fire_at, executed, created_at) VALUES (RANDOM_UUID(), 'restart', 'group', 'lab', ?, ?, false, ?)",
+				LocalDateTime.now().plusYears(5), LocalDateTime.now().plusYears(5), LocalDateTime.now());
+		}
+		System.out.println("[BENCH] INSERT linha a linha de " + ENTRIES + " linhas: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+	}
+
+	private long timeBulk(int run) {
+		// Longe o bastante para não entrar na janela da linha do tempo
+		LocalDateTime base = LocalDateTime.now().plusYears(1 + run);
+		List<ScheduleCommandDto> dtos = new ArrayList<>(ENTRIES);
+		for (int i = 0; i < ENTRIES; i++) {
+			dtos.add(new ScheduleCommandDto(base.plusMinutes(i), null,
+				new CommandGroupHostsRequestDto("lab", "restart", null, null), null, null, null, null, null));
+		}
+
+		long start = System.nanoTime();
+		BulkScheduleResponseDto response = scheduledCommandService.scheduleCommands(dtos);
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		assertEquals(ENTRIES, response.scheduled());
+		return elapsedMs;
+	}
+}
@@ -0,0 +1,128 @@
+package br.edu.satc.backend.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import br.edu.satc.backend.dtos.AgentRegisterRequestDto;
+import br.edu.satc.backend.dtos.ScheduleFireDto;
+import br.edu.satc.backend.models.MisfirePolicy;
+import br.edu.satc.backend.repositories.AgentRepository;
+import br.edu.satc.backend.repositories.ScheduledCommandRepository;
+
+/**
+ * Disparos atrasados de cada política, com o limite de atraso padrão (5 s) e
+ * a janela padrão do FIRE_IF_WITHIN (120 s).
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:misfire-tests")
+class ScheduledCommandMisfireTests {
+
+	private static final long LATE_SECONDS = 600;
+
+	@Autowired
+	private ScheduledCommandService scheduledCommandService;
+
+	@Autowired
+	private ScheduledCommandRepository scheduledCommandRepository;
+
+	@Autowired
+	private AgentService agentService;
+
+	@Autowired
+	private AgentRepository agentRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void registerAgent() {
+		// Comandos para "all" precisam de pelo menos um agente registrado
+		if (agentRepository.findByAgentKey("misfire-key").isEmpty()) {
+			agentService.registerAgent(new AgentRegisterRequestDto("misfire-host", "lab", "misfire-key"));
+			agentService.approveAgent(agentRepository.findByAgentKey("misfire-key").orElseThrow().getId());
+		}
+	}
+
+	@Test
+	void fireNowFiresWhateverTheDelay() {
+		assertEquals("late", fire(MisfirePolicy.FIRE_NOW, null, LATE_SECONDS));
+	}
+
+	@Test
+	void skipDropsTheLateOccurrence() {
+		assertEquals("skipped", fire(MisfirePolicy.SKIP, null, LATE_SECONDS));
+	}
+
+	@Test
+	void fireIfWithinFiresInsideTheScheduleWindow() {
+		assertEquals("late", fire(MisfirePolicy.FIRE_IF_WITHIN, 900, LATE_SECONDS));
+	}
+
+	@Test
+	void fireIfWithinSkipsOutsideTheScheduleWindow() {
+		assertEquals("skipped", fire(MisfirePolicy.FIRE_IF_WITHIN, 60, LATE_SECONDS));
+	}
+
+	@Test
+	void scheduleWithoutPolicyUsesTheDefaultWindow() {
+		assertEquals("late", fire(null, null, 60));
+		assertEquals("skipped", fire(null, null, LATE_SECONDS));
+	}
+
+	@Test
+	void delayBelowTheThresholdIsNotAMisfire() {
+		assertEquals("fired", fire(MisfirePolicy.SKIP, null, 1));
+	}
+
+	@Test
+	void skippedRecurrenceMovesOnToTheNextOccurrenceAfterNow() {
+		UUID id = insert(MisfirePolicy.SKIP, null, LATE_SECONDS, "0 0 * * * *");
+
+		assertEquals("skipped", awaitOutcome(id));
+		LocalDateTime next = scheduledCommandRepository.findById(id).orElseThrow().getNextFireAt();
+		assertTrue(next.isAfter(LocalDateTime.now()), "próxima ocorrência " + next);
+	}
+
+	private String fire(MisfirePolicy policy, Integer withinSeconds, long lateSeconds) {
+		return awaitOutcome(insert(policy, withinSeconds, lateSeconds, null));
+	}
+
+	private UUID insert(MisfirePolicy policy, Integer withinSeconds, long lateSeconds, String cron) {
+		UUID id = UUID.randomUUID();
+		LocalDateTime fireAt = LocalDateTime.now().minusSeconds(lateSeconds);
+		jdbcTemplate.update("INSERT INTO scheduled_commands (id, command, target_type, target_value, scheduled_for, "
+			+ "next_fire_at, executed, recurrence_cron, recurrence_zone, created_at, misfire_policy, misfire_within_seconds) "
+			+ "VALUES (?, 'restart', 'all', NULL, ?, ?, false, ?, ?, ?, ?, ?)",
+			id, fireAt, fireAt, cron, cron != null ? "UTC" : null, LocalDateTime.now(),
+			policy != null ? policy.name() : null, withinSeconds);
+		scheduledCommandService.loadUpcoming();
+		return id;
+	}
+
+	private String awaitOutcome(UUID id) {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (System.currentTimeMillis() < deadline) {
+			for (ScheduleFireDto fire : scheduledCommandService.stats().recentFires()) {
+				if (fire.scheduleId().equals(id)) {
+					return fire.outcome();
+				}
+			}
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				fail(ex);
+			}
+		}
+		return fail("agendamento " + id + " não disparou");
+	}
+}
@@ -36,6 +36,8 @@ export default function AgentsPage() {
   const [scheduledTime, setScheduledTime] = useState("") 
   const [scheduleChecked, setScheduleChecked] = useState(false) // checkbox agendar
   const [executing, setExecuting] = useState(false)
+  // Uma chave por abertura do diálogo: reenviar após timeout não duplica o comando
+  const [idempotencyKey, setIdempotencyKey] = useState("")
 
   const pageSize = 10
 
@@ -97,12 +99,14 @@ export default function AgentsPage() {
     setShutdownDialogOpen(true)
     setScheduledTime("")
     setScheduleChecked(false)
+    setIdempotencyKey(crypto.randomUUID())
   }
 
   const executeShutdown = async () => {
     if ((shutdownType === "group" && !selectedGroup) || !shutdownCommand) return
 
     setExecuting(true)
+    const config = { headers: { "Idempotency-Key": idempotencyKey } }
     try {
       if (scheduleChecked && scheduledTime) {
         // usar o endpoint novo de agendamento
@@ -112,16 +116,16 @@ export default function AgentsPage() {
           groupCommand: shutdownType === "group" ? { group: selectedGroup, command: shutdownCommand } : null,
           hostCommand: shutdownType === "single" && selectedAgent ? { hostname: selectedAgent.hostname, command: shutdownCommand } : null
         }
-        await api.post("/api/manager/admin/schedule_command", payload)
+        await api.post("/api/manager/admin/schedule_command", payload, config)
         toast.success(`Comando de ${shutdownCommand} agendado com sucesso!`)
       } else {
         // enviar imediatamente usando os endpoints antigos
         if (shutdownType === "single" && selectedAgent) {
-          await api.post("/api/manager/admin/queue_command", { hostname: selectedAgent.hostname, command: shutdownCommand })
+          await api.post("/api/manager/admin/queue_command", { hostname: selectedAgent.hostname, command: shutdownCommand }, config)
         } else if (shutdownType === "group" && selectedGroup) {
-          await api.post("/api/manager/admin/queue_command_group", { group: selectedGroup, command: shutdownCommand })
+          await api.post("/api/manager/admin/queue_command_group", { group: selectedGroup, command: shutdownCommand }, config)
         } else if (shutdownType === "all") {
-          await api.post("/api/manager/admin/queue_command_all", { command: shutdownCommand })
+          await api.post("/api/manager/admin/queue_command_all", { command: shutdownCommand }, config)
         }
         toast.success(`Comando de ${shutdownCommand} enviado com sucesso!`)
       }
@@ -50,14 +50,24 @@ export interface ScheduleCommandPayload {
   allHostsCommand?: { command: string } | null
   groupCommand?: { group: string; command: string } | null
   hostCommand?: { hostname: string; command: string } | null
+  // Repetição: cron ("0 22 * * *") ou dias da semana + horário, no fuso informado
+  recurrence?: {
+    cron?: string
+    daysOfWeek?: ("MONDAY" | "TUESDAY" | "WEDNESDAY" | "THURSDAY" | "FRIDAY" | "SATURDAY" | "SUNDAY")[]
+    time?: string // "22:00"
+    zone?: string // ex: "America/Sao_Paulo"
+  } | null
 }
 
 /**
  * Agenda um comando para host(s) específicos, grupo ou todos.
+ * Repetir a chamada com a mesma idempotencyKey não cria outro agendamento.
  */
-export async function scheduleCommand(payload: ScheduleCommandPayload) {
+export async function scheduleCommand(payload: ScheduleCommandPayload, idempotencyKey: string = crypto.randomUUID()) {
   try {
-    const { data } = await api.post("/api/manager/admin/schedule_command", payload)
+    const { data } = await api.post("/api/manager/admin/schedule_command", payload, {
+      headers: { "Idempotency-Key": idempotencyKey },
+    })
     return data
   } catch (error) {
     throw handleError(error, "Erro ao agendar comando")